@@ -0,0 +1,693 @@
+package praktikum2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CalculationHistory
+ * <p>
+ * Persistent history of calculations (expression and result), stored in two memory-mapped files:
+ * <ul>
+ *   <li>history.log - append-only log of the records (expression as UTF-8, result as unscaled value and scale)</li>
+ *   <li>history.idx - index of fixed-size entries pointing to the records in the log</li>
+ * </ul>
+ * Opening the history only maps the files and reads their headers, so it takes the same time regardless of the history size.
+ * Every entry has an id which does not change when old entries are removed. The first entry has the id 1.
+ * <p>
+ * After close(), or if the files cannot be mapped again after a compaction, every access throws an UncheckedIOException.
+ */
+public class CalculationHistory implements Closeable {
+
+  // Declaration of constants for the file format. Both files start with the magic number and the version.
+  private static final int MAGIC = 0x52484953;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 32;
+
+  // Log header: magic, version, generation, end of the last record, id of the first record
+  private static final int LOG_GENERATION = 8;
+  private static final int LOG_END = 16;
+  private static final int LOG_FIRST_ID = 24;
+
+  // Index header: magic, version, generation of the log, number of entries, end of the log the index was written for
+  private static final int INDEX_GENERATION = 8;
+  private static final int INDEX_COUNT = 16;
+  private static final int INDEX_LOG_END = 24;
+
+  // Record: length of the expression, length of the unscaled value, scale, result as double, expression, unscaled value
+  private static final int RECORD_EXPRESSION_LENGTH = 0;
+  private static final int RECORD_UNSCALED_LENGTH = 4;
+  private static final int RECORD_SCALE = 8;
+  private static final int RECORD_VALUE = 12;
+  private static final int RECORD_HEADER_SIZE = 20;
+
+  // Index entry: offset of the record, first 8 bytes of the expression, result as double, length of the expression, length of the unscaled value
+  private static final int ENTRY_OFFSET = 0;
+  private static final int ENTRY_PREFIX = 8;
+  private static final int ENTRY_VALUE = 16;
+  private static final int ENTRY_EXPRESSION_LENGTH = 24;
+  private static final int ENTRY_UNSCALED_LENGTH = 28;
+  private static final int ENTRY_SIZE = 32;
+
+  // Initial size of the mapped files. The mappings are doubled whenever they are full.
+  private static final int INITIAL_CAPACITY = 64 * 1024;
+
+  private final Path logPath;
+  private final Path indexPath;
+
+  // Single background thread for the compaction, so appending never has to wait for it
+  private final ExecutorService background = Executors.newSingleThreadExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "CalculationHistory-compaction");
+      thread.setDaemon(true);
+      return thread;
+  });
+
+  private FileChannel logChannel;
+  private FileChannel indexChannel;
+  private MappedByteBuffer log;
+  private MappedByteBuffer index;
+
+  private long generation;
+  private long end;
+  private long firstId;
+  private long count;
+
+  private int maxEntries = Integer.MAX_VALUE;
+  private boolean compacting;
+
+  // Reason why the history cannot be used anymore, null while it is open
+  private IOException failure;
+
+  private CalculationHistory(final Path directory) {
+      this.logPath = directory.resolve("history.log");
+      this.indexPath = directory.resolve("history.idx");
+  }
+
+  /**
+   * Opens the history stored in a directory, creating it if it does not exist yet.
+   * <p>
+   * If the index does not belong to the log (e.g. because the program was terminated while writing), it is rebuilt from the log.
+   *
+   * @param directory The directory containing the history files.
+   * @return The opened history.
+   * @throws IOException If the files cannot be created, opened or mapped.
+   */
+  public static CalculationHistory open(final Path directory) throws IOException {
+      Files.createDirectories(directory);
+      final CalculationHistory history = new CalculationHistory(directory);
+      history.map();
+      return history;
+  }
+
+  /**
+   * Maps the log and the index and reads their headers.
+   *
+   * @throws IOException If the files cannot be opened or mapped.
+   */
+  private void map() throws IOException {
+      logChannel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      indexChannel = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      log = logChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(logChannel.size(), INITIAL_CAPACITY));
+      index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(indexChannel.size(), INITIAL_CAPACITY));
+
+      // A new log only needs a header
+      if (log.getInt(0) != MAGIC) {
+          log.putInt(0, MAGIC);
+          log.putInt(4, VERSION);
+          log.putLong(LOG_GENERATION, 0);
+          log.putLong(LOG_END, HEADER_SIZE);
+          log.putLong(LOG_FIRST_ID, 1);
+      } else if (log.getInt(4) != VERSION) {
+          throw new IOException("Unbekannte Verlaufsversion: " + log.getInt(4));
+      }
+      generation = log.getLong(LOG_GENERATION);
+      end = log.getLong(LOG_END);
+      firstId = log.getLong(LOG_FIRST_ID);
+
+      // The index is only used if it was written for exactly this log
+      if (index.getInt(0) == MAGIC && index.getInt(4) == VERSION
+              && index.getLong(INDEX_GENERATION) == generation && index.getLong(INDEX_LOG_END) == end) {
+          count = index.getLong(INDEX_COUNT);
+      } else {
+          rebuildIndex();
+      }
+  }
+
+  /**
+   * Rebuilds the index by reading all records of the log.
+   *
+   * @throws IOException If the index cannot be enlarged.
+   */
+  private void rebuildIndex() throws IOException {
+      count = 0;
+      int offset = HEADER_SIZE;
+      while (offset < end) {
+          final int expressionLength = log.getInt(offset + RECORD_EXPRESSION_LENGTH);
+          final int unscaledLength = log.getInt(offset + RECORD_UNSCALED_LENGTH);
+          ensureCapacity(0, ENTRY_SIZE);
+          writeEntry(offset, readBytes(log, offset + RECORD_HEADER_SIZE, expressionLength),
+                  log.getDouble(offset + RECORD_VALUE), unscaledLength);
+          count++;
+          offset += RECORD_HEADER_SIZE + expressionLength + unscaledLength;
+      }
+      index.putInt(0, MAGIC);
+      index.putInt(4, VERSION);
+      index.putLong(INDEX_GENERATION, generation);
+      index.putLong(INDEX_COUNT, count);
+      index.putLong(INDEX_LOG_END, end);
+  }
+
+  /**
+   * Appends a calculation to the history.
+   *
+   * @param expression The calculated expression.
+   * @param result The result of the calculation.
+   * @return The id of the new entry.
+   * @throws UncheckedIOException If the history is closed or the files cannot be enlarged.
+   */
+  public synchronized long append(final String expression, final BigDecimal result) {
+      ensureOpen();
+      final byte[] expressionBytes = expression.getBytes(StandardCharsets.UTF_8);
+      final byte[] unscaled = result.unscaledValue().toByteArray();
+      final int recordSize = RECORD_HEADER_SIZE + expressionBytes.length + unscaled.length;
+      final double value = result.doubleValue();
+
+      try {
+          ensureCapacity(recordSize, ENTRY_SIZE);
+      } catch (final IOException e) {
+          throw new UncheckedIOException(e);
+      }
+
+      // Write the record and its index entry first, the headers make them visible afterwards
+      final int offset = (int) end;
+      log.putInt(offset + RECORD_EXPRESSION_LENGTH, expressionBytes.length);
+      log.putInt(offset + RECORD_UNSCALED_LENGTH, unscaled.length);
+      log.putInt(offset + RECORD_SCALE, result.scale());
+      log.putDouble(offset + RECORD_VALUE, value);
+      writeBytes(log, offset + RECORD_HEADER_SIZE, expressionBytes);
+      writeBytes(log, offset + RECORD_HEADER_SIZE + expressionBytes.length, unscaled);
+      writeEntry(offset, expressionBytes, value, unscaled.length);
+
+      end += recordSize;
+      count++;
+      log.putLong(LOG_END, end);
+      index.putLong(INDEX_COUNT, count);
+      index.putLong(INDEX_LOG_END, end);
+
+      // Remove old entries in the background once the history is a quarter above its maximum size
+      if (!compacting && count - maxEntries > maxEntries / 4) {
+          compacting = true;
+          try {
+              background.execute(this::compact);
+          } catch (final RejectedExecutionException e) {
+              // The history is being closed, the entries are removed by one of the next compactions instead
+              compacting = false;
+          }
+      }
+
+      return firstId + count - 1;
+  }
+
+  /**
+   * Sets the maximum number of entries. Older entries are removed in the background.
+   *
+   * @param maxEntries The maximum number of entries.
+   * @throws IllegalArgumentException If the maximum is not positive.
+   */
+  public synchronized void setMaxEntries(final int maxEntries) {
+      if (maxEntries < 1) {
+          throw new IllegalArgumentException("Ungültige Verlaufsgröße");
+      }
+      this.maxEntries = maxEntries;
+  }
+
+  /**
+   * @return The number of entries in the history.
+   */
+  public synchronized long size() {
+      return count;
+  }
+
+  /**
+   * @return The id of the oldest entry.
+   */
+  public synchronized long firstId() {
+      return firstId;
+  }
+
+  /**
+   * @return The id of the newest entry, or firstId() - 1 if the history is empty.
+   */
+  public synchronized long lastId() {
+      return firstId + count - 1;
+  }
+
+  /**
+   * Returns the expression of an entry.
+   *
+   * @param id The id of the entry.
+   * @return The expression.
+   * @throws IllegalArgumentException If there is no entry with this id.
+   * @throws UncheckedIOException If the history is closed.
+   */
+  public synchronized String expression(final long id) {
+      final int entry = entryPosition(id);
+      final int offset = (int) index.getLong(entry + ENTRY_OFFSET);
+      final int expressionLength = index.getInt(entry + ENTRY_EXPRESSION_LENGTH);
+      return new String(readBytes(log, offset + RECORD_HEADER_SIZE, expressionLength), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Returns the result of an entry. The result is restored from its unscaled value and scale, the expression is not parsed again.
+   *
+   * @param id The id of the entry.
+   * @return The result.
+   * @throws IllegalArgumentException If there is no entry with this id.
+   * @throws UncheckedIOException If the history is closed.
+   */
+  public synchronized BigDecimal result(final long id) {
+      final int entry = entryPosition(id);
+      final int offset = (int) index.getLong(entry + ENTRY_OFFSET);
+      final int expressionLength = index.getInt(entry + ENTRY_EXPRESSION_LENGTH);
+      final int unscaledLength = index.getInt(entry + ENTRY_UNSCALED_LENGTH);
+      final byte[] unscaled = readBytes(log, offset + RECORD_HEADER_SIZE + expressionLength, unscaledLength);
+      return new BigDecimal(new BigInteger(unscaled), log.getInt(offset + RECORD_SCALE));
+  }
+
+  /**
+   * Returns the result of the newest entry (Ans).
+   *
+   * @return The result of the newest entry.
+   * @throws IllegalArgumentException If the history is empty.
+   * @throws UncheckedIOException If the history is closed.
+   */
+  public synchronized BigDecimal ans() {
+      ensureOpen();
+      if (count == 0) {
+          throw new IllegalArgumentException("Kein Verlauf");
+      }
+      return result(lastId());
+  }
+
+  /**
+   * Finds all entries whose expression starts with a prefix.
+   * The first 8 bytes of every expression are stored in the index, so the log is only read for longer prefixes.
+   *
+   * @param prefix The prefix of the expression.
+   * @return The ids of the matching entries, newest first.
+   * @throws UncheckedIOException If the history is closed.
+   */
+  public synchronized List<Long> findByPrefix(final String prefix) {
+      ensureOpen();
+      final byte[] prefixBytes = prefix.getBytes(StandardCharsets.UTF_8);
+      final long key = prefixKey(prefixBytes);
+      // Only compare the bytes of the key which belong to the prefix
+      final long mask = prefixBytes.length >= 8 ? -1L : ~(-1L >>> (8 * prefixBytes.length));
+
+      final List<Long> ids = new ArrayList<>();
+      for (long i = count - 1; i >= 0; i--) {
+          final int entry = HEADER_SIZE + (int) i * ENTRY_SIZE;
+          if ((index.getLong(entry + ENTRY_PREFIX) & mask) != key
+                  || index.getInt(entry + ENTRY_EXPRESSION_LENGTH) < prefixBytes.length) {
+              continue;
+          }
+          if (prefixBytes.length > 8 && !startsWith((int) index.getLong(entry + ENTRY_OFFSET) + RECORD_HEADER_SIZE, prefixBytes)) {
+              continue;
+          }
+          ids.add(firstId + i);
+      }
+      return ids;
+  }
+
+  /**
+   * Finds all entries with a result equal to a value.
+   * The results are stored as double in the index, so only entries with the same double value are compared exactly.
+   *
+   * @param value The result to search for.
+   * @return The ids of the matching entries, newest first.
+   * @throws UncheckedIOException If the history is closed.
+   */
+  public synchronized List<Long> findByResult(final BigDecimal value) {
+      ensureOpen();
+      final double approximation = value.doubleValue();
+
+      final List<Long> ids = new ArrayList<>();
+      for (long i = count - 1; i >= 0; i--) {
+          final int entry = HEADER_SIZE + (int) i * ENTRY_SIZE;
+          if (index.getDouble(entry + ENTRY_VALUE) == approximation && result(firstId + i).compareTo(value) == 0) {
+              ids.add(firstId + i);
+          }
+      }
+      return ids;
+  }
+
+  /**
+   * Writes the changes to disk and closes the history. A running compaction is finished first. If it does not finish within
+   * 10 seconds, it is discarded when it does and the old files are kept.
+   *
+   * @throws IOException If the files cannot be closed.
+   */
+  @Override
+  public void close() throws IOException {
+      background.shutdown();
+      try {
+          background.awaitTermination(10, TimeUnit.SECONDS);
+      } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+      }
+      synchronized (this) {
+          // The files of a history which could not be mapped again are already closed
+          if (failure == null) {
+              failure = new IOException("Verlauf geschlossen");
+              log.force();
+              index.force();
+              closeChannels();
+          }
+      }
+  }
+
+  /**
+   * Removes the oldest entries so that maxEntries are left. Runs on the background thread.
+   * <p>
+   * The remaining records are copied to new files which replace the old ones. Records never change once they are written,
+   * so most of the copying happens without blocking the calculator. Only records appended in the meantime are copied while holding the lock.
+   */
+  private void compact() {
+      try {
+          final MappedByteBuffer sourceLog;
+          final MappedByteBuffer sourceIndex;
+          final long removed;
+          final long snapshot;
+          synchronized (this) {
+              sourceLog = log;
+              sourceIndex = index;
+              removed = count - maxEntries;
+              snapshot = count;
+          }
+          if (removed <= 0) {
+              return;
+          }
+
+          final Path newLogPath = logPath.resolveSibling(logPath.getFileName() + ".tmp");
+          final Path newIndexPath = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+          try (FileChannel newLog = FileChannel.open(newLogPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+               FileChannel newIndex = FileChannel.open(newIndexPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+              long newEnd = copyRecords(sourceLog, sourceIndex, removed, snapshot, removed, newLog, newIndex, HEADER_SIZE);
+
+              synchronized (this) {
+                  if (failure != null) {
+                      // The history was closed while the records were copied, so the old files stay as they are
+                      Files.deleteIfExists(newLogPath);
+                      Files.deleteIfExists(newIndexPath);
+                      return;
+                  }
+                  // Copy the records appended during the compaction
+                  newEnd = copyRecords(log, index, snapshot, count, removed, newLog, newIndex, newEnd);
+                  final long newCount = count - removed;
+                  final long newFirstId = firstId + removed;
+                  final long newGeneration = generation + 1;
+
+                  writeHeader(newLog, newGeneration, newEnd, newFirstId);
+                  writeHeader(newIndex, newGeneration, newCount, newEnd);
+                  newLog.force(true);
+                  newIndex.force(true);
+
+                  // If the program is terminated between the two moves, the index is rebuilt on the next start
+                  Files.move(newLogPath, logPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                  try {
+                      Files.move(newIndexPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                  } finally {
+                      // The new log is in place, so it has to be used even if the index could not be moved (it is rebuilt then)
+                      closeChannels();
+                      remapAfterCompaction();
+                  }
+              }
+          }
+      } catch (final IOException e) {
+          // Keep the old files, the compaction is tried again on one of the next appends
+      } finally {
+          synchronized (this) {
+              compacting = false;
+          }
+      }
+  }
+
+  /**
+   * Maps the files again after they have been replaced by a compaction.
+   * If this fails, the old mappings belong to files which are no longer in place, so the history cannot be used anymore.
+   *
+   * @throws IOException If the files cannot be opened or mapped.
+   */
+  private void remapAfterCompaction() throws IOException {
+      try {
+          map();
+      } catch (final IOException | RuntimeException e) {
+          failure = e instanceof IOException ? (IOException) e : new IOException(e);
+          closeChannels();
+          throw failure;
+      }
+  }
+
+  /**
+   * Closes the log and the index file. Closing an already closed file has no effect.
+   *
+   * @throws IOException If the files cannot be closed.
+   */
+  private void closeChannels() throws IOException {
+      try {
+          logChannel.close();
+      } finally {
+          indexChannel.close();
+      }
+  }
+
+  /**
+   * Checks that the history can still be used.
+   *
+   * @throws UncheckedIOException If the history is closed or its files could not be mapped again.
+   */
+  private void ensureOpen() {
+      if (failure != null) {
+          throw new UncheckedIOException(failure);
+      }
+  }
+
+  /**
+   * Copies records and their index entries to the new files of a compaction.
+   *
+   * @param sourceLog The log to copy from.
+   * @param sourceIndex The index to copy from.
+   * @param from The position of the first entry to copy.
+   * @param to The position after the last entry to copy.
+   * @param removed The number of entries removed by the compaction.
+   * @param newLog The new log.
+   * @param newIndex The new index.
+   * @param newEnd The end of the new log.
+   * @return The end of the new log after copying.
+   * @throws IOException If the new files cannot be written.
+   */
+  private static long copyRecords(final MappedByteBuffer sourceLog, final MappedByteBuffer sourceIndex, final long from, final long to,
+                                  final long removed, final FileChannel newLog, final FileChannel newIndex, long newEnd) throws IOException {
+      final ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE);
+      long newEntry = HEADER_SIZE + (from - removed) * ENTRY_SIZE;
+
+      for (long i = from; i < to; i++) {
+          final int position = HEADER_SIZE + (int) i * ENTRY_SIZE;
+          final int offset = (int) sourceIndex.getLong(position + ENTRY_OFFSET);
+          final int recordSize = RECORD_HEADER_SIZE + sourceIndex.getInt(position + ENTRY_EXPRESSION_LENGTH)
+                  + sourceIndex.getInt(position + ENTRY_UNSCALED_LENGTH);
+
+          final ByteBuffer record = sourceLog.duplicate();
+          record.position(offset);
+          record.limit(offset + recordSize);
+          writeFully(newLog, record, newEnd);
+
+          // The entry stays the same except for the offset of the record
+          entry.clear();
+          for (int b = 0; b < ENTRY_SIZE; b++) {
+              entry.put(b, sourceIndex.get(position + b));
+          }
+          entry.putLong(ENTRY_OFFSET, newEnd);
+          writeFully(newIndex, entry, newEntry);
+
+          newEnd += recordSize;
+          newEntry += ENTRY_SIZE;
+      }
+      return newEnd;
+  }
+
+  /**
+   * Writes the header of a new log or index.
+   *
+   * @param channel The file to write to.
+   * @param generation The generation of the log.
+   * @param value1 The end of the log (log) or the number of entries (index).
+   * @param value2 The first id (log) or the end of the log (index).
+   * @throws IOException If the header cannot be written.
+   */
+  private static void writeHeader(final FileChannel channel, final long generation, final long value1, final long value2) throws IOException {
+      final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      header.putInt(0, MAGIC);
+      header.putInt(4, VERSION);
+      header.putLong(8, generation);
+      header.putLong(16, value1);
+      header.putLong(24, value2);
+      writeFully(channel, header, 0);
+  }
+
+  /**
+   * Writes the remaining bytes of a buffer to a file.
+   *
+   * @param channel The file to write to.
+   * @param buffer The bytes to write.
+   * @param position The position in the file.
+   * @throws IOException If the bytes cannot be written.
+   */
+  private static void writeFully(final FileChannel channel, final ByteBuffer buffer, long position) throws IOException {
+      while (buffer.hasRemaining()) {
+          position += channel.write(buffer, position);
+      }
+  }
+
+  /**
+   * Enlarges the mappings if the next record or index entry does not fit.
+   *
+   * @param recordSize The size of the next record.
+   * @param entrySize The size of the next index entry.
+   * @throws IOException If the files cannot be enlarged.
+   */
+  private void ensureCapacity(final int recordSize, final int entrySize) throws IOException {
+      if (end + recordSize > log.capacity()) {
+          log = remap(logChannel, log.capacity(), end + recordSize);
+      }
+      final long indexEnd = HEADER_SIZE + count * ENTRY_SIZE + entrySize;
+      if (indexEnd > index.capacity()) {
+          index = remap(indexChannel, index.capacity(), indexEnd);
+      }
+  }
+
+  /**
+   * Maps a file again with at least twice its previous size.
+   *
+   * @param channel The file to map.
+   * @param capacity The previous size of the mapping.
+   * @param required The size needed.
+   * @return The new mapping.
+   * @throws IOException If the file is too large or cannot be mapped.
+   */
+  private static MappedByteBuffer remap(final FileChannel channel, final long capacity, final long required) throws IOException {
+      final long size = Math.max(capacity * 2, required);
+      if (size > Integer.MAX_VALUE) {
+          throw new IOException("Verlauf zu groß");
+      }
+      return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+  }
+
+  /**
+   * Writes an index entry at the position of the next entry.
+   *
+   * @param offset The offset of the record in the log.
+   * @param expressionBytes The expression as UTF-8.
+   * @param value The result as double.
+   * @param unscaledLength The length of the unscaled value.
+   */
+  private void writeEntry(final int offset, final byte[] expressionBytes, final double value, final int unscaledLength) {
+      final int entry = HEADER_SIZE + (int) count * ENTRY_SIZE;
+      index.putLong(entry + ENTRY_OFFSET, offset);
+      index.putLong(entry + ENTRY_PREFIX, prefixKey(expressionBytes));
+      index.putDouble(entry + ENTRY_VALUE, value);
+      index.putInt(entry + ENTRY_EXPRESSION_LENGTH, expressionBytes.length);
+      index.putInt(entry + ENTRY_UNSCALED_LENGTH, unscaledLength);
+  }
+
+  /**
+   * Determines the position of an index entry.
+   *
+   * @param id The id of the entry.
+   * @return The position of the entry in the index.
+   * @throws IllegalArgumentException If there is no entry with this id.
+   * @throws UncheckedIOException If the history is closed.
+   */
+  private int entryPosition(final long id) {
+      ensureOpen();
+      if (id < firstId || id >= firstId + count) {
+          throw new IllegalArgumentException("Ungültiger Verlaufseintrag");
+      }
+      return HEADER_SIZE + (int) (id - firstId) * ENTRY_SIZE;
+  }
+
+  /**
+   * Checks if the expression at a position of the log starts with the given bytes.
+   *
+   * @param position The position of the expression in the log.
+   * @param prefixBytes The prefix as UTF-8.
+   * @return True if the expression starts with the prefix, false otherwise.
+   */
+  private boolean startsWith(final int position, final byte[] prefixBytes) {
+      for (int i = 0; i < prefixBytes.length; i++) {
+          if (log.get(position + i) != prefixBytes[i]) {
+              return false;
+          }
+      }
+      return true;
+  }
+
+  /**
+   * Packs the first 8 bytes of an expression into a long, filled up with zeros.
+   *
+   * @param bytes The expression as UTF-8.
+   * @return The key stored in the index.
+   */
+  private static long prefixKey(final byte[] bytes) {
+      long key = 0;
+      for (int i = 0; i < 8; i++) {
+          key = (key << 8) | (i < bytes.length ? bytes[i] & 0xFF : 0);
+      }
+      return key;
+  }
+
+  /**
+   * Reads bytes from a mapped file.
+   *
+   * @param buffer The mapped file.
+   * @param position The position of the first byte.
+   * @param length The number of bytes.
+   * @return The bytes.
+   */
+  private static byte[] readBytes(final ByteBuffer buffer, final int position, final int length) {
+      final byte[] bytes = new byte[length];
+      final ByteBuffer source = buffer.duplicate();
+      source.position(position);
+      source.get(bytes);
+      return bytes;
+  }
+
+  /**
+   * Writes bytes to a mapped file.
+   *
+   * @param buffer The mapped file.
+   * @param position The position of the first byte.
+   * @param bytes The bytes.
+   */
+  private static void writeBytes(final ByteBuffer buffer, final int position, final byte[] bytes) {
+      final ByteBuffer target = buffer.duplicate();
+      target.position(position);
+      target.put(bytes);
+  }
+}
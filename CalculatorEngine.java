@@ -1,15 +1,22 @@
 package praktikum2;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.math.MathContext;
 import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
 import java.util.Stack;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 /**
  * CalculatorActivity
@@ -26,17 +33,99 @@ public class RechenMaxCalculator {
   // Declaration of a constant for the root operation.
   public static final String ROOT = "√";
 
+  // Results from this value on are displayed in scientific notation.
+  private static final BigDecimal SCIENTIFIC_THRESHOLD = new BigDecimal("1000000000000000000");
+
+  // The regular expressions are compiled once when the class is loaded instead of on every call.
+  // A number in scientific notation: a number which may be negative or positive and may have a decimal part,
+  // followed by 'e' or 'E', an optional '+' or '-' sign and one or more digits
+  private static final Pattern SCIENTIFIC_NUMBER = Pattern.compile("([-+]?\\d+(\\.\\d+)?)([eE][-+]?\\d+)");
+  // An input which consists of exactly one number in scientific notation
+  private static final Pattern SCIENTIFIC_NOTATION = Pattern.compile("^" + SCIENTIFIC_NUMBER.pattern() + "$");
+  // All characters except digits, decimal points, commas and minus signs
+  private static final Pattern NON_NUMERIC = Pattern.compile("[^0-9.,\\-]");
+  // Whitespace between the parts of an expression
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+  // Representative expressions for warmUp(). Together they run through every operator, function, output format and error message.
+  private static final String[] WARM_UP_CORPUS = {
+          "2+3", "10-5", "4×6", "12÷3", "4^2", "2^-2", "√(16)", "5!", "-3!",
+          "sin(25)", "cos(30)", "tan(35)", "sin⁻¹(0,5)", "cos⁻¹(-1)", "tan⁻¹(1)",
+          "6,022e23", "2,718E-5", "1,5e3*2", "π*2", "1÷3", "1.000,5+2,25", "(2+3)*4-√(9)",
+          "2^100", "0,000000000000000001", "170!", "1÷0", "0^-1", "tan(90)", "sin⁻¹(2)", "2,5!", "√(-4)", "2+", "=2+2"
+  };
+
+  // Representative expressions of the programmer mode for warmUp(), including results which do not fit into a long.
+  private static final String[] WARM_UP_PROGRAMMER_CORPUS = {
+          "0xFF & 0b1010 | 0o17", "1 << 4 xor ~0", "-0x10 >> 2", "100 mod 7 - 3 * (2 + 5) / 4", "3^5 + 5!", "1 << 70", "0xFFFFFFFFFFFFFFFF1 * 2", "30!", "1 / 0"
+  };
+
+  // Declaration of constants for references to the calculation history: Ans is the last result, #12 the result of entry 12.
+  public static final String ANS = "Ans";
+  public static final String HISTORY_REFERENCE = "#";
+
+  // Declaration of constants for the operators of the programmer mode. The symbols + - * / ^ ! are shared with the normal mode.
+  public static final String AND = "&";
+  public static final String OR = "|";
+  public static final String XOR = "xor";
+  public static final String NOT = "~";
+  public static final String SHIFT_LEFT = "<<";
+  public static final String SHIFT_RIGHT = ">>";
+  public static final String MOD = "mod";
+  // Minus sign in front of something which is not a number (e.g. -(1+2) or -~0). Only created by the tokenizer, it cannot be entered.
+  public static final String NEGATE = "neg";
+
+  // Operators of the programmer mode consisting of more than one character.
+  private static final String[] PROGRAMMER_WORD_OPERATORS = {SHIFT_LEFT, SHIFT_RIGHT, XOR, MOD};
+
+  // Largest result of the programmer mode in bits. Larger results are rejected instead of filling the memory.
+  private static final int MAX_PROGRAMMER_BITS = 1 << 20;
+
+  // Declaration of a constant for the variable used by the columnar evaluation. It is written as x (first column) or x0, x1, ... (column index).
+  public static final String VARIABLE = "x";
+
+  // Number of values the columnar evaluation processes per operation. The block buffers are small enough to stay in the CPU cache.
+  private static final int BLOCK_SIZE = 1024;
+
+  // Powers of ten which are exact doubles, used to round values of the columnar evaluation to MC.
+  private static final double[] POWERS_OF_TEN = {
+          1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+          1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  // Factorials from 0! to 170! as double values, used by the columnar evaluation of the factorial operator.
+  private static final double[] FACTORIALS = factorials();
+
+  // History the calculations are recorded in and Ans and #12 refer to. Null if no history is used.
+  // Volatile, because it is set by the application and read by every calculation, on any thread.
+  private static volatile CalculationHistory history;
+
+  /**
+   * Sets the history the results of calculate() are recorded in and which Ans and #12 in expressions refer to.
+   *
+   * @param calculationHistory The history, or null to use no history.
+   */
+  public static void setHistory(final CalculationHistory calculationHistory) {
+      history = calculationHistory;
+  }
+
+  /**
+   * @return The history used by calculate(), or null if no history is used.
+   */
+  public static CalculationHistory getHistory() {
+      return history;
+  }
+
   /**
    * This method calculates the result of a mathematical expression. The expression is passed as a string parameter.
    * <p>
    * It first replaces all the special characters in the expression with their corresponding mathematical symbols.
    * <p>
-   * If the expression is in scientific notation, it converts it to decimal notation.
-   * <p>
-   * It then tokenizes the expression and evaluates it.
+   * It then tokenizes the expression and evaluates it. Numbers in scientific notation (e.g. 1,5e-300) are read directly
+   * as unscaled value and scale, so their cost does not depend on the size of the exponent.
    * <p>
    * If the result is too large, it returns "Wert zu groß" (Value too large).
-   * If the result is in scientific notation, it formats it to decimal notation.
+   * If the result is very large, very small or has many digits, it is returned in scientific notation, otherwise in decimal notation.
    * <p>
    * It handles various exceptions such as ArithmeticException, IllegalArgumentException, and other exceptions.
    *
@@ -46,27 +135,22 @@ public class RechenMaxCalculator {
    * @throws IllegalArgumentException If there is an illegal argument in the calculation.
    */
   public static String calculate(final String calc) {
+      return calculate(calc, true);
+  }
+
+  /**
+   * Calculates the result of a mathematical expression, see {@link #calculate(String)}.
+   *
+   * @param calc The mathematical expression as a string to be calculated.
+   * @param record Whether the calculation is recorded in the history.
+   * @return The result of the calculation as a string.
+   */
+  private static String calculate(final String calc, final boolean record) {
       try {
           // Replace all the special characters in the expression with their corresponding mathematical symbols
-          String trim = calc.replace('×', '*')
-                  .replace('÷', '/')
-                  .replace("=", "")
-                  .replace(".", "")
-                  .replace(",", ".")
-                  .replace("E", "e")
-                  .replace("π", "3.1415926535897932384626433832")
-                  .trim();
-
-          // If the expression is in scientific notation, convert it to decimal notation
-          if (isScientificNotation(trim)) {
-              String result = convertScientificToDecimal(trim);
-              return removeNonNumeric(result);
-          }
+          String trim = normalize(calc);
 
           // Tokenize the expression and handle negative exponent in division
-
-          // final String expression = convertScientificToDecimal(trim);
-          // final List<String> tokens = tokenize(expression);
           final List<String> tokens = tokenize(trim);
 
           for (int i = 0; i < tokens.size() - 1; i++) {
@@ -89,16 +173,22 @@ public class RechenMaxCalculator {
           if (Double.isInfinite(resultDouble)) {
               return "Wert zu groß";
           }
-          // If the result is larger than a certain threshold, return it in scientific notation
-          if (result.compareTo(new BigDecimal("1000000000000000000")) >= 0 || result.precision() > 17) {
+          // Only results which are displayed are recorded, so Ans never refers to a rejected result
+          if (record) {
+              record(calc, result);
+          }
+          // If the result is larger than a certain threshold or has too many digits, return it in scientific notation.
+          // This also applies to very small results, whose decimal notation would consist of a long row of zeros.
+          final BigDecimal stripped = result.stripTrailingZeros();
+          if (result.abs().compareTo(SCIENTIFIC_THRESHOLD) >= 0 || result.precision() > 17 || stripped.scale() > 17) {
               return String.format(Locale.GERMAN, "%.10e", result);
           } else {
               // Otherwise, return the result in decimal notation
-              return result.stripTrailingZeros().toPlainString().replace('.', ',');
+              return stripped.toPlainString().replace('.', ',');
           }
       } catch (ArithmeticException e) {
           // Handle exceptions related to arithmetic errors
-          if (Objects.equals(e.getMessage(), "Wert zu groß")) {
+          if (Objects.equals(e.getMessage(), "Wert zu groß") || isOutOfRange(e)) {
               return "Wert zu groß";
           } else {
               return e.getMessage();
@@ -111,21 +201,161 @@ public class RechenMaxCalculator {
       }
   }
 
+  /**
+   * Checks if an ArithmeticException of BigDecimal or BigInteger means that the exponent or the number of digits of a result
+   * is out of the range these classes support (e.g. 1e999999999*1e999999999).
+   *
+   * @param e The exception to check.
+   * @return True if the result is out of range, false otherwise.
+   */
+  private static boolean isOutOfRange(final ArithmeticException e) {
+      return Objects.equals(e.getMessage(), "Overflow") || Objects.equals(e.getMessage(), "Underflow")
+              || Objects.equals(e.getMessage(), "BigInteger would overflow supported range");
+  }
+
+  /**
+   * Replaces all the special characters of an input with their corresponding mathematical symbols.
+   * The input uses the German notation: ',' is the decimal separator and '.' the thousands separator.
+   *
+   * @param calc The input as entered by the user.
+   * @return The expression in the notation of the tokenizer.
+   */
+  public static String normalize(final String calc) {
+      return calc.replace('×', '*')
+              .replace('÷', '/')
+              .replace("=", "")
+              .replace(".", "")
+              .replace(",", ".")
+              .replace("E", "e")
+              .replace("π", "3.1415926535897932384626433832")
+              .trim();
+  }
+
+  /**
+   * Warms up the calculator by running a built-in set of representative expressions once through calculate(),
+   * the programmer mode and the columnar evaluation. The warm-up calculations are not recorded in the history.
+   * The history is warmed up with a temporary history, which is deleted afterwards.
+   * <p>
+   * One pass loads and initializes all classes involved (BigDecimal, Formatter, regex, ...), which is most of the cost of the
+   * first calculation. The code still runs in the interpreter afterwards, see {@link #warmUp(int)} for compiling it as well.
+   * <p>
+   * Call it at startup on a background thread, otherwise it delays the first result. It is also the training run for an
+   * AppCDS archive, see {@link #main(String[])}.
+   */
+  public static void warmUp() {
+      warmUp(1);
+  }
+
+  /**
+   * Warms up the calculator by running the built-in expressions a given number of times, see {@link #warmUp()}.
+   * <p>
+   * More iterations give the JIT compiler the chance to compile the hot methods, so that the following calculations do not
+   * run in the interpreter. This takes considerably longer than one pass (about 650 ms for 200 iterations) and is only
+   * worth it if it runs on a background thread while the user is not calculating yet.
+   *
+   * @param iterations How many times the expressions are run.
+   */
+  public static void warmUp(final int iterations) {
+      final double[] x = new double[BLOCK_SIZE + 1];
+      final double[] out = new double[x.length];
+      for (int i = 0; i < x.length; i++) {
+          x[i] = i - BLOCK_SIZE / 2;
+      }
+
+      if (iterations > 0) {
+          warmUpHistory();
+      }
+      for (int i = 0; i < iterations; i++) {
+          for (final String calc : WARM_UP_CORPUS) {
+              calculate(calc, false);
+          }
+          for (final String calc : WARM_UP_PROGRAMMER_CORPUS) {
+              calculateProgrammer(calc, 16, false);
+          }
+          evaluate("x^2+3*x-1", x, out);
+          evaluate("√(x0)+sin(x1)-x0/x1+x1!", new double[][] {x, x}, out);
+      }
+  }
+
+  /**
+   * Warms up the history: opens a temporary history, records results, resolves Ans and #1 and searches it.
+   * The history set with setHistory() is not used. Errors are ignored, the warm-up is only an optimization.
+   */
+  private static void warmUpHistory() {
+      try {
+          final Path directory = Files.createTempDirectory("calculator-warm-up");
+          try {
+              final CalculationHistory warmUpHistory = CalculationHistory.open(directory);
+              try {
+                  warmUpHistory.append("2+3", new BigDecimal("5"));
+                  warmUpHistory.append("1÷3", BigDecimal.ONE.divide(BigDecimal.valueOf(3), MC));
+                  tokenize("Ans*2+#1");
+                  resolveHistoryReference(ANS, warmUpHistory);
+                  resolveHistoryReference("-" + HISTORY_REFERENCE + warmUpHistory.firstId(), warmUpHistory);
+                  warmUpHistory.findByPrefix("2+");
+                  warmUpHistory.findByResult(new BigDecimal("5"));
+              } finally {
+                  warmUpHistory.close();
+              }
+          } finally {
+              try (Stream<Path> files = Files.list(directory)) {
+                  for (final Path file : (Iterable<Path>) files::iterator) {
+                      Files.deleteIfExists(file);
+                  }
+              }
+              Files.deleteIfExists(directory);
+          }
+      } catch (final IOException | UncheckedIOException e) {
+          // do nothing
+      }
+  }
+
+  /**
+   * Command line entry point. Calculates the expressions given as arguments and prints the results, one per line.
+   * <p>
+   * With the single argument --warm-up it runs {@link #warmUp()} instead. Used as the training run, it creates an AppCDS archive
+   * of all classes the calculator needs, which shortens the startup of later runs (the classes have to be in a jar for this):
+   * <pre>
+   * java -XX:ArchiveClassesAtExit=calculator.jsa -cp calculator.jar praktikum2.RechenMaxCalculator --warm-up
+   * java -XX:SharedArchiveFile=calculator.jsa -cp calculator.jar praktikum2.RechenMaxCalculator "2+3"
+   * </pre>
+   *
+   * @param args The expressions to calculate, or --warm-up.
+   */
+  public static void main(final String[] args) {
+      if (args.length == 1 && args[0].equals("--warm-up")) {
+          warmUp();
+          return;
+      }
+      for (final String calc : args) {
+          System.out.println(calculate(calc));
+      }
+  }
+
+  /**
+   * Records a calculation in the history, if one is used.
+   * A history which cannot be written does not make the calculation fail, the calculation is just not recorded.
+   *
+   * @param calc The calculated expression.
+   * @param result The result of the calculation.
+   */
+  private static void record(final String calc, final BigDecimal result) {
+      final CalculationHistory calculationHistory = history;
+      if (calculationHistory != null) {
+          try {
+              calculationHistory.append(calc, result);
+          } catch (final UncheckedIOException e) {
+              // do nothing, the history reports closed or unusable files the same way
+          }
+      }
+  }
+
   public static boolean isScientificNotation(final String str) {
       // The input string is formatted by replacing all commas with dots. This is because in some locales, a comma is used as the decimal separator.
       final String formattedInput = str.replace(",", ".");
 
-      // A regular expression pattern is defined to match the scientific notation. The pattern is as follows:
-      // "^([-+]?\\d+(\\.\\d+)?)([eE][-+]?\\d+)$"
-      // Explanation of the pattern:
-      // "^" - start of the line
-      // "([-+]?\\d+(\\.\\d+)?)"" - matches a number which may be negative or positive, and may have a decimal part
-      // "([eE][-+]?\\d+)" - matches 'e' or 'E' followed by an optional '+' or '-' sign, followed by one or more digits
-      // "$" - end of the line
-      final Pattern pattern = Pattern.compile("^([-+]?\\d+(\\.\\d+)?)([eE][-+]?\\d+)$");
-
-      // The pattern is used to create a matcher for the formatted input string
-      final Matcher matcher = pattern.matcher(formattedInput);
+      // The precompiled pattern is used to create a matcher for the formatted input string
+      final Matcher matcher = SCIENTIFIC_NOTATION.matcher(formattedInput);
 
       // The method returns true if the matcher finds a match in the input string, indicating that the string is in scientific notation
       return matcher.matches();
@@ -135,9 +365,8 @@ public class RechenMaxCalculator {
     // Replace commas with dots for proper decimal representation
     final String formattedInput = str;
 
-    // Define the pattern for scientific notation
-    final Pattern pattern = Pattern.compile("([-+]?\\d+(\\.\\d+)?)([eE][-+]?\\d+)");
-    final Matcher matcher = pattern.matcher(formattedInput);
+    // Use the precompiled pattern for scientific notation
+    final Matcher matcher = SCIENTIFIC_NUMBER.matcher(formattedInput);
     final StringBuffer sb = new StringBuffer();
 
     // Process all matches found in the input string
@@ -164,13 +393,8 @@ public class RechenMaxCalculator {
                 number = number.negate();
             }
 
-            // Scale the number by the power of ten specified by the exponent
-            BigDecimal scaledNumber;
-            if (exponent >= 0) {
-                scaledNumber = number.scaleByPowerOfTen(exponent);
-            } else {
-                scaledNumber = number.divide(BigDecimal.TEN.pow(-exponent));
-            }
+            // Scale the number by the power of ten specified by the exponent (only changes the scale, for negative exponents too)
+            final BigDecimal scaledNumber = number.scaleByPowerOfTen(exponent);
 
             // Remove trailing zeros and append the scaled number to the result buffer
             String result = sign + scaledNumber.stripTrailingZeros().toPlainString();
@@ -202,7 +426,7 @@ public class RechenMaxCalculator {
    */
   public static String removeNonNumeric(final String str) {
       // Replace all non-numeric and non-decimal point characters in the string with an empty string
-      return str.replaceAll("[^0-9.,\\-]", "");
+      return NON_NUMERIC.matcher(str).replaceAll("");
   }
   
   /**
@@ -213,7 +437,7 @@ public class RechenMaxCalculator {
    */
   public static List<String> tokenize(final String expression) {
       // Remove all spaces from the expression
-      String expressionWithoutSpaces = expression.replaceAll("\\s+", "");
+      String expressionWithoutSpaces = WHITESPACE.matcher(expression).replaceAll("");
   
       List<String> tokens = new ArrayList<>();
       StringBuilder currentToken = new StringBuilder();
@@ -225,7 +449,29 @@ public class RechenMaxCalculator {
           // add it to the current token
           if (Character.isDigit(c) || c == '.' || (c == '-' && (i == 0 || expressionWithoutSpaces.charAt(i - 1) == '(' || isOperator(String.valueOf(expressionWithoutSpaces.charAt(i - 1)))))) {
               currentToken.append(c);
+          } else if (c == 'e' && isExponent(expressionWithoutSpaces, i, currentToken)) {
+              // The exponent of a number in scientific notation stays part of the number (e.g. 1.5e-300),
+              // so the number is not written out with all its zeros
+              currentToken.append(c);
+              if (!Character.isDigit(expressionWithoutSpaces.charAt(i + 1))) {
+                  currentToken.append(expressionWithoutSpaces.charAt(i + 1)); // Add the sign of the exponent
+                  i++;
+              }
           } else {
+              // Variables (x, x0, x1, ...) and history references (Ans, #12) are complete tokens
+              final int end = referenceEnd(expressionWithoutSpaces, i);
+              if (end > i) {
+                  // A pending minus sign belongs to the reference, just like it belongs to a number
+                  if (currentToken.length() > 0 && !currentToken.toString().equals("-")) {
+                      tokens.add(currentToken.toString());
+                      currentToken.setLength(0);
+                  }
+                  tokens.add(currentToken + expressionWithoutSpaces.substring(i, end));
+                  currentToken.setLength(0);
+                  i = end - 1; // Skip the rest of the reference (already processed)
+                  continue;
+              }
+
               // If the character is an operator or a parenthesis, add the current token to the list and reset the current token
               if (currentToken.length() > 0) {
                   tokens.add(currentToken.toString());
@@ -261,6 +507,49 @@ public class RechenMaxCalculator {
       return tokens;
   }
   
+  /**
+   * Checks if the 'e' at a position of an expression starts the exponent of the number in the current token.
+   * This is the case if the current token is a number without exponent and the 'e' is followed by digits, optionally with a sign.
+   *
+   * @param expression The expression.
+   * @param position The position of the 'e'.
+   * @param currentToken The token read so far.
+   * @return True if the 'e' starts an exponent, false otherwise.
+   */
+  private static boolean isExponent(final String expression, final int position, final CharSequence currentToken) {
+      if (currentToken.length() == 0 || !Character.isDigit(currentToken.charAt(currentToken.length() - 1))
+              || currentToken.toString().indexOf('e') >= 0) {
+          return false;
+      }
+      int next = position + 1;
+      if (next < expression.length() && (expression.charAt(next) == '+' || expression.charAt(next) == '-')) {
+          next++;
+      }
+      return next < expression.length() && Character.isDigit(expression.charAt(next));
+  }
+
+  /**
+   * Determines where a variable (x, x0, x1, ...) or a history reference (Ans, #12) starting at a position of an expression ends.
+   *
+   * @param expression The expression.
+   * @param start The position of the first character.
+   * @return The position after the reference, or start if there is no reference at this position.
+   */
+  private static int referenceEnd(final String expression, final int start) {
+      if (expression.startsWith(ANS, start)) {
+          return start + ANS.length();
+      }
+      if (!expression.startsWith(VARIABLE, start) && !expression.startsWith(HISTORY_REFERENCE, start)) {
+          return start;
+      }
+      // Both are followed by an index, which is optional for variables
+      int end = start + 1;
+      while (end < expression.length() && Character.isDigit(expression.charAt(end))) {
+          end++;
+      }
+      return expression.startsWith(HISTORY_REFERENCE, start) && end == start + 1 ? start : end;
+  }
+
   /**
    * Evaluates a mathematical expression represented as a list of tokens.
    * Converts the expression from infix notation to postfix notation, then evaluates the postfix expression.
@@ -275,6 +564,96 @@ public class RechenMaxCalculator {
       // Evaluate the postfix expression and return the result
       return evaluatePostfix(postfixTokens);
   }
+
+  /**
+   * Evaluates a mathematical expression for every value of an input array, e.g. for function plots.
+   * The variable x in the expression stands for the value of the input array.
+   *
+   * @param expression The mathematical expression in the notation of calculate(), e.g. "x^2+sin(x)*0,5".
+   * @param x The input values.
+   * @param out The array the results are written to. Its length determines how many values are evaluated.
+   * @throws IllegalArgumentException If there is a syntax error in the expression or the input array is too short.
+   * @see #evaluate(String, double[][], double[])
+   */
+  public static void evaluate(final String expression, final double[] x, final double[] out) {
+      evaluate(expression, new double[][] {x}, out);
+  }
+
+  /**
+   * Evaluates a mathematical expression for every row of a set of data columns.
+   * The variables x0, x1, ... in the expression stand for the values of the corresponding column, x is the same as x0.
+   * <p>
+   * Instead of evaluating the expression value by value, every postfix operation is applied to a whole block of values
+   * at a time, so the expression is parsed once and the loops run without any per-value overhead. The loops of + - * and of
+   * the negation of a column are plain double arithmetic, which the JIT compiler can turn into SIMD instructions where the
+   * hardware supports it. Division, power, square root, factorial and the trigonometric functions round every element
+   * (with a BigDecimal fallback for rare cases), so their loops are not vectorized.
+   * <p>
+   * The operators behave like in {@link #evaluatePostfix(List)} (degree mode, factorial of negative numbers, ...) and round
+   * like it: division and power to MC, the trigonometric functions to 10 decimal places. Applied to the input values, these
+   * give the same doubles as evaluatePostfix, element for element (see ColumnarEquivalenceCheck). + - * work on the doubles,
+   * while evaluatePostfix calculates exactly with their decimal representation, so they can differ by the rounding of the
+   * operands. In chained expressions the intermediate results are doubles instead of BigDecimals, so these differences are
+   * passed on, and a following rounded operation may round to the neighbouring value.
+   * Where evaluatePostfix would throw an exception for a value (e.g. division by 0), the result is NaN instead, so a single
+   * invalid value does not abort a whole plot.
+   *
+   * @param expression The mathematical expression in the notation of calculate(), e.g. "x0*x1+1".
+   * @param columns The input columns.
+   * @param out The array the results are written to. Its length determines how many rows are evaluated.
+   * @throws IllegalArgumentException If there is a syntax error in the expression, an unknown column is referenced or a column is too short.
+   */
+  public static void evaluate(final String expression, final double[][] columns, final double[] out) {
+      // Convert the expression to postfix once and check it before touching any values
+      final List<String> postfixTokens = infixToPostfix(tokenize(normalize(expression)));
+      final int depth = columnarStackDepth(postfixTokens, columns.length);
+
+      for (final double[] column : columns) {
+          if (column.length < out.length) {
+              throw new IllegalArgumentException("Spalte zu kurz");
+          }
+      }
+
+      // Classify the tokens and parse the constants once instead of once per block
+      final boolean[] isConstant = new boolean[postfixTokens.size()];
+      final double[] constants = new double[postfixTokens.size()];
+      final int[] columnIndexes = new int[postfixTokens.size()];
+      for (int t = 0; t < postfixTokens.size(); t++) {
+          final String token = postfixTokens.get(t);
+          isConstant[t] = isNumber(token) || isHistoryReference(token);
+          if (isNumber(token)) {
+              constants[t] = new BigDecimal(token).doubleValue();
+          } else if (isHistoryReference(token)) {
+              constants[t] = resolveHistoryReference(token).doubleValue();
+          }
+          columnIndexes[t] = isVariable(token) ? columnIndex(token) : -1;
+      }
+
+      // Each stack entry holds the intermediate results of one block
+      final double[][] stack = new double[depth][BLOCK_SIZE];
+
+      for (int from = 0; from < out.length; from += BLOCK_SIZE) {
+          final int length = Math.min(BLOCK_SIZE, out.length - from);
+          int top = 0;
+
+          for (int t = 0; t < postfixTokens.size(); t++) {
+              final String token = postfixTokens.get(t);
+
+              if (isConstant[t]) {
+                  Arrays.fill(stack[top++], 0, length, constants[t]);
+              } else if (columnIndexes[t] >= 0) {
+                  loadColumn(columns[columnIndexes[t]], from, token.startsWith("-"), stack[top++], length);
+              } else if (token.equals("!") || token.equals(ROOT) || isFunction(token)) {
+                  applyUnaryToBlock(token, stack[top - 1], length);
+              } else {
+                  top--;
+                  applyBinaryToBlock(token, stack[top - 1], stack[top], length);
+              }
+          }
+
+          System.arraycopy(stack[0], 0, out, from, length);
+      }
+  }
   
   /**
    * Applies an operator to two operands. Supports addition, subtraction, multiplication, division, square root, factorial, and power operations.
@@ -289,10 +668,12 @@ public class RechenMaxCalculator {
   public static BigDecimal applyOperator(final BigDecimal operand1, final BigDecimal operand2, final String operator) {
     final String mode = "Deg";
       switch (operator) {
+          // Rounded to 34 digits, so that adding numbers with very different exponents (e.g. 1e10000000+1)
+          // does not create the exact result with millions of digits
           case "+":
-              return operand1.add(operand2);
+              return operand1.add(operand2, MathContext.DECIMAL128);
           case "-":
-              return operand1.subtract(operand2);
+              return operand1.subtract(operand2, MathContext.DECIMAL128);
           case "*":
               return operand1.multiply(operand2);
           case "/":
@@ -463,6 +844,9 @@ public class RechenMaxCalculator {
           // If the token is a number, add it to the stack
           if (isNumber(token)) {
               stack.add(new BigDecimal(token));
+          } else if (isHistoryReference(token)) {
+              // Results from the history are used as they are stored, without parsing them again
+              stack.add(resolveHistoryReference(token));
           } else if (isOperator(token)) {
               // If the token is an operator, apply the operator to the numbers in the stack
               applyOperatorToStack(token, stack);
@@ -625,143 +1009,1229 @@ public class RechenMaxCalculator {
       // Check if degrees is a multiple of 90
       return Math.abs(degrees % 90) == 0;
   }
-  
+
   /**
-   * Converts a mathematical expression from infix notation to postfix notation.
+   * Checks a postfix expression for the columnar evaluation and determines how many blocks its stack needs at most.
    *
-   * @param infixTokens The list of tokens in infix notation.
-   * @return The list of tokens in postfix notation.
+   * @param postfixTokens The list of tokens in postfix notation.
+   * @param columnCount The number of input columns.
+   * @return The maximum stack depth.
+   * @throws IllegalArgumentException If there is a syntax error in the expression or an unknown column is referenced.
    */
-  public static List<String> infixToPostfix(final List<String> infixTokens) {
-      final List<String> postfixTokens = new ArrayList<>();
-      final Stack<String> stack = new Stack<>();
-  
-      for (final String token : infixTokens) {
-  
-          if (isNumber(token)) {
-              postfixTokens.add(token);
-          } else if (isFunction(token)) {
-              stack.push(token);
-          } else if (isOperator(token) && token.equals("-")) {
-              while (!stack.isEmpty() && precedence(stack.peek()) >= precedence(token) && !isFunction(stack.peek())) {
-                  postfixTokens.add(stack.pop());
-              }
-              stack.push(token);
-          } else if (isOperator(token)) {
-              while (!stack.isEmpty() && precedence(stack.peek()) >= precedence(token) && !isFunction(stack.peek())) {
-                  postfixTokens.add(stack.pop());
+  private static int columnarStackDepth(final List<String> postfixTokens, final int columnCount) {
+      int size = 0;
+      int depth = 0;
+
+      for (final String token : postfixTokens) {
+          if (isNumber(token) || isHistoryReference(token)) {
+              size++;
+          } else if (isVariable(token)) {
+              if (columnIndex(token) >= columnCount) {
+                  throw new IllegalArgumentException("Unbekannte Variable: '" + token + "'");
               }
-              stack.push(token);
-          } else if (token.equals("(")) {
-              stack.push(token);
-          } else if (token.equals(")")) {
-              while (!stack.isEmpty() && !stack.peek().equals("(")) {
-                  postfixTokens.add(stack.pop());
+              size++;
+          } else if (token.equals("!") || token.equals(ROOT) || isFunction(token)) {
+              // Unary operators and functions replace the top of the stack
+              if (size < 1) {
+                  throw new IllegalArgumentException("Syntax Fehler2");
               }
-              if (!stack.isEmpty() && stack.peek().equals("(")) {
-                  stack.pop(); // Remove the opening parenthesis
-                  if (!stack.isEmpty() && isFunction(stack.peek())) {
-                      postfixTokens.add(stack.pop());
-                  }
+          } else if (isOperator(token)) {
+              // Binary operators replace the two numbers on top of the stack by their result
+              if (size < 2) {
+                  throw new IllegalArgumentException("Syntax Fehler2");
               }
+              size--;
+          } else {
+              throw new IllegalArgumentException("Syntax Fehler1");
           }
+          depth = Math.max(depth, size);
       }
-  
-      while (!stack.isEmpty()) {
-          postfixTokens.add(stack.pop());
+
+      // If there is more than one number in the stack at the end, the expression is invalid
+      if (size != 1) {
+          throw new IllegalArgumentException("Syntax Fehler2");
       }
-  
-      return postfixTokens;
+
+      return depth;
   }
-  
+
   /**
-   * Checks if the given token represents a recognized trigonometric function.
+   * Determines the column a variable refers to. x is the same as x0.
    *
-   * @param token The token to be checked.
-   * @return true if the token represents a trigonometric function, false otherwise.
+   * @param variable The variable token.
+   * @return The index of the column.
    */
-  public static boolean isFunction(final String token) {
-      // Check if the token is one of the recognized trigonometric functions
-      return token.equals("sin(") || token.equals("cos(") || token.equals("tan(") ||
-              token.equals("sin⁻¹(") || token.equals("cos⁻¹(") || token.equals("tan⁻¹(");
+  private static int columnIndex(final String variable) {
+      final int start = variable.indexOf(VARIABLE) + 1;
+      return start == variable.length() ? 0 : Integer.parseInt(variable.substring(start));
   }
-  
+
   /**
-   * Checks if a token is a number.
-   * It attempts to create a BigDecimal from the token. If successful, the token is considered a number; otherwise, it is not.
+   * Copies a block of values from an input column, negating them if the variable has a leading minus sign.
    *
-   * @param token The token to be checked.
-   * @return True if the token is a number, false otherwise.
+   * @param column The input column.
+   * @param from The index of the first value of the block.
+   * @param negate Whether the values are negated.
+   * @param block The block the values are copied to.
+   * @param length The number of values in the block.
    */
-  public static boolean isNumber(final String token) {
-      // Try to create a new BigDecimal from the token
-      try {
-          new BigDecimal(token);
-          // If successful, the token is a number
-          return true;
-      }
-      // If a NumberFormatException is thrown, the token is not a number
-      catch (final NumberFormatException e) {
-          return false;
+  private static void loadColumn(final double[] column, final int from, final boolean negate, final double[] block, final int length) {
+      if (negate) {
+          for (int i = 0; i < length; i++) {
+              block[i] = -column[from + i];
+          }
+      } else {
+          System.arraycopy(column, from, block, 0, length);
       }
   }
-  
-  /**
-   * Checks if the given token represents a recognized non-functional operator.
-   *
-   * @param token The token to be checked.
-   * @return true if the token represents a non-functional operator, false otherwise.
-   */
-  public static boolean isOperator(final String token) {
-      // Check if the token is one of the recognized non-functional operators
-      return token.equals("+") || token.equals("-") || token.equals("*") || token.equals("/") ||
-              token.equals("^") || token.equals("√") || token.equals("!");
-  }
-  
+
   /**
-   * Determines the precedence of an operator.
-   * Precedence rules determine the order in which expressions involving both unary and binary operators are evaluated.
+   * Applies a binary operator to two blocks of values. The result replaces the values of the first block.
+   * Mirrors {@link #applyOperator(BigDecimal, BigDecimal, String)}, values it would reject become NaN.
    *
-   * @param operator The operator to be checked.
-   * @return The precedence of the operator.
+   * @param operator The operator to be applied.
+   * @param block1 The first operands, overwritten with the results.
+   * @param block2 The second operands.
+   * @param length The number of values in the blocks.
    * @throws IllegalArgumentException If the operator is not recognized.
    */
-  public static int precedence(final String operator) {
-      // If the operator is an opening parenthesis, return 0
+  private static void applyBinaryToBlock(final String operator, final double[] block1, final double[] block2, final int length) {
       switch (operator) {
-          case "(":
-              return 0;
-  
-          // If the operator is addition or subtraction, return 1
           case "+":
+              for (int i = 0; i < length; i++) {
+                  block1[i] += block2[i];
+              }
+              break;
           case "-":
-              return 1;
-  
-          // If the operator is multiplication or division, return 2
+              for (int i = 0; i < length; i++) {
+                  block1[i] -= block2[i];
+              }
+              break;
           case "*":
+              for (int i = 0; i < length; i++) {
+                  block1[i] *= block2[i];
+              }
+              break;
           case "/":
-              return 2;
-  
-          // If the operator is exponentiation, return 3
+              for (int i = 0; i < length; i++) {
+                  // Division by 0 is not allowed
+                  block1[i] = block2[i] == 0 ? Double.NaN : divide(block1[i], block2[i]);
+              }
+              break;
           case "^":
-              return 3;
-  
-          // If the operator is square root, return 4
-          case "√":
-              return 4;
-  
-          // If the operator is factorial, return 5
-          case "!":
-              return 5;
-  
-          // If the operator is sine, cosine, or tangent, return 6
-          case "sin(":
-          case "cos(":
-          case "tan(":
+              for (int i = 0; i < length; i++) {
+                  block1[i] = pow(block1[i], block2[i]);
+              }
+              break;
+          default:
+              throw new IllegalArgumentException("Unbekannter Operator: '" + operator + "'");
+      }
+  }
+
+  /**
+   * Applies a unary operator (factorial, square root) or a function to a block of values. The result replaces the values of the block.
+   * Mirrors {@link #applyOperatorToStack(String, List)} and {@link #evaluateFunction(String, List)}, values they would reject become NaN.
+   *
+   * @param operator The operator or function to be applied.
+   * @param block The operands, overwritten with the results.
+   * @param length The number of values in the block.
+   */
+  private static void applyUnaryToBlock(final String operator, final double[] block, final int length) {
+      switch (operator) {
+          case "!": {
+              final double[] table = FACTORIALS;
+              for (int i = 0; i < length; i++) {
+                  final double number = block[i];
+                  if (number > 170 || number != Math.rint(number)) {
+                      // Factorial is only defined for whole numbers up to 170
+                      block[i] = Double.NaN;
+                  } else if (number < -170) {
+                      block[i] = Double.NEGATIVE_INFINITY;
+                  } else {
+                      block[i] = number < 0 ? -table[(int) -number] : table[(int) number];
+                  }
+              }
+              break;
+          }
+          case ROOT:
+              for (int i = 0; i < length; i++) {
+                  // Only real numbers are supported
+                  block[i] = block[i] < 0 ? Double.NaN : Math.sqrt(block[i]);
+              }
+              break;
+          case "sin(":
+              for (int i = 0; i < length; i++) {
+                  block[i] = truncate(Math.sin(Math.toRadians(block[i])));
+              }
+              break;
+          case "sin⁻¹(":
+              for (int i = 0; i < length; i++) {
+                  block[i] = block[i] < -1 || block[i] > 1 ? Double.NaN : truncate(Math.toDegrees(Math.asin(block[i])));
+              }
+              break;
+          case "cos(":
+              for (int i = 0; i < length; i++) {
+                  block[i] = truncate(Math.cos(Math.toRadians(block[i])));
+              }
+              break;
+          case "cos⁻¹(":
+              for (int i = 0; i < length; i++) {
+                  block[i] = block[i] < -1 || block[i] > 1 ? Double.NaN : truncate(Math.toDegrees(Math.acos(block[i])));
+              }
+              break;
+          case "tan(":
+              for (int i = 0; i < length; i++) {
+                  // The tangent of multiples of 90 degrees is not defined
+                  block[i] = isMultipleOf90(block[i]) ? Double.NaN : truncate(Math.tan(Math.toRadians(block[i])));
+              }
+              break;
+          case "tan⁻¹(":
+              for (int i = 0; i < length; i++) {
+                  block[i] = truncate(Math.toDegrees(Math.atan(block[i])));
+              }
+              break;
+      }
+  }
+
+  /**
+   * Calculates the power of a base number to an exponent for the columnar evaluation.
+   * Mirrors {@link #pow(BigDecimal, BigDecimal)}, but returns NaN instead of throwing an exception.
+   *
+   * @param base The base number.
+   * @param exponent The exponent.
+   * @return The result of raising the base to the power of the exponent, or NaN.
+   */
+  private static double pow(final double base, final double exponent) {
+      // Division by 0 is not allowed
+      if (base == 0 && exponent < 0) {
+          return Double.NaN;
+      }
+
+      final double result;
+      if (base < 0 && exponent == (int) exponent) {
+          result = -Math.pow(-base, exponent);
+      } else {
+          result = Math.pow(base, exponent);
+      }
+
+      // Values too large for a double are rejected by the BigDecimal evaluation as well
+      if (Double.isInfinite(result) || Double.isNaN(result)) {
+          return Double.NaN;
+      }
+
+      // Round to MC like the BigDecimal evaluation, exactly where the fast rounding cannot decide
+      final double rounded = roundToMathContext(result);
+      return Double.isNaN(rounded) ? new BigDecimal(result, MC).doubleValue() : rounded;
+  }
+
+  /**
+   * Divides two numbers for the columnar evaluation and rounds the quotient to MC, like {@link #applyOperator(BigDecimal, BigDecimal, String)}.
+   *
+   * @param dividend The dividend.
+   * @param divisor The divisor, not 0.
+   * @return The rounded quotient.
+   */
+  private static double divide(final double dividend, final double divisor) {
+      final double quotient = dividend / divisor;
+      if (!Double.isFinite(quotient)) {
+          return quotient;
+      }
+
+      // Round to MC like the BigDecimal evaluation, exactly where the fast rounding cannot decide
+      final double rounded = roundToMathContext(quotient);
+      return Double.isNaN(rounded) ? BigDecimal.valueOf(dividend).divide(BigDecimal.valueOf(divisor), MC).doubleValue() : rounded;
+  }
+
+  /**
+   * Rounds a value to the precision of MC (half up) without creating a BigDecimal.
+   * <p>
+   * The value is scaled to an integer part of 11 digits, rounded and scaled back. Powers of ten up to 10^22 are exact doubles,
+   * so scaling back is a single correctly rounded operation, which gives the same double as the rounded BigDecimal.
+   * Scaling the value introduces a tiny error, so values close to the middle between two results cannot be rounded this way.
+   *
+   * @param value The finite value to be rounded.
+   * @return The rounded value, or NaN if the value has to be rounded with BigDecimal.
+   */
+  private static double roundToMathContext(final double value) {
+      if (value == 0) {
+          return 0;
+      }
+      final double magnitude = Math.abs(value);
+      int scale = MC.getPrecision() - 1 - (int) Math.floor(Math.log10(magnitude));
+      double scaled = scaleByPowerOfTen(magnitude, scale);
+
+      // Math.log10 may be off by one next to powers of ten
+      if (scaled >= 1e11) {
+          scaled = scaleByPowerOfTen(magnitude, --scale);
+      } else if (scaled < 1e10) {
+          scaled = scaleByPowerOfTen(magnitude, ++scale);
+      }
+      if (Double.isNaN(scaled)) {
+          return Double.NaN;
+      }
+
+      final double fraction = scaled - Math.floor(scaled);
+      if (Math.abs(fraction - 0.5) < 1e-3) {
+          return Double.NaN;
+      }
+      final double digits = Math.floor(scaled) + (fraction > 0.5 ? 1 : 0);
+      final double rounded = scale >= 0 ? digits / POWERS_OF_TEN[scale] : digits * POWERS_OF_TEN[-scale];
+      return value < 0 ? -rounded : rounded;
+  }
+
+  /**
+   * Multiplies a value by a power of ten which is an exact double.
+   *
+   * @param value The value.
+   * @param exponent The exponent of the power of ten.
+   * @return The scaled value, or NaN if the power of ten is not an exact double.
+   */
+  private static double scaleByPowerOfTen(final double value, final int exponent) {
+      if (Math.abs(exponent) >= POWERS_OF_TEN.length) {
+          return Double.NaN;
+      }
+      return exponent >= 0 ? value * POWERS_OF_TEN[exponent] : value / POWERS_OF_TEN[-exponent];
+  }
+
+  /**
+   * Cuts a function value off after 10 decimal places, like the trigonometric functions of the BigDecimal evaluation do.
+   * This also turns values like sin(180) into an exact 0.
+   *
+   * @param value The function value.
+   * @return The truncated value.
+   */
+  private static double truncate(final double value) {
+      // Values from 10^6 on do not have more than 10 decimal places in double precision, NaN stays NaN
+      if (!(Math.abs(value) < 1e6)) {
+          return value;
+      }
+
+      // Up to 10^5 the scaled value is an exact integer plus a tiny error, values next to an integer are truncated with BigDecimal
+      final double scaled = Math.abs(value) * 1e10;
+      final double fraction = scaled - Math.floor(scaled);
+      final double error = scaled * 1e-15;
+      if (Math.abs(value) >= 1e5 || fraction < error || fraction > 1 - error) {
+          return BigDecimal.valueOf(value).setScale(10, RoundingMode.DOWN).doubleValue();
+      }
+      final double truncated = Math.floor(scaled) / 1e10;
+      return value < 0 ? -truncated : truncated;
+  }
+
+  /**
+   * Calculates the factorials from 0! to 170! as double values.
+   * The values are the exact factorials converted to double, like the result of {@link #factorial(BigDecimal)}.
+   *
+   * @return The table of factorials.
+   */
+  private static double[] factorials() {
+      final double[] table = new double[171];
+      BigDecimal result = BigDecimal.ONE;
+      table[0] = 1;
+      for (int i = 1; i < table.length; i++) {
+          result = result.multiply(BigDecimal.valueOf(i));
+          table[i] = result.doubleValue();
+      }
+      return table;
+  }
+
+  /**
+   * Calculates the result of an integer expression in programmer mode and returns it in the given base.
+   * <p>
+   * Numbers can be entered as decimal (255), hexadecimal (0xFF), octal (0o377) or binary (0b11111111) numbers.
+   * Hexadecimal, octal and binary numbers with up to 64 bits of digits (16, 22 or 64 digits) are read as 64-bit two's complement
+   * (0xFFFFFFFFFFFFFFFF is -1), numbers with more digits as their plain value. Results which do not fit into a long are shown
+   * with more digits than a 64-bit pattern (2^63 is 0x08000000000000000), so they are read back as the same value.
+   * Supported operators are + - * / mod ^ ! and the bitwise operators & | xor ~ &lt;&lt; &gt;&gt;.
+   * <p>
+   * The expression is evaluated on primitive longs. Only if a result does not fit into a long, it is evaluated again with BigInteger.
+   *
+   * @param calc The expression as a string to be calculated.
+   * @param radix The base of the result: 2, 8, 10 or 16.
+   * @return The result of the calculation as a string, or the error message.
+   */
+  public static String calculateProgrammer(final String calc, final int radix) {
+      return calculateProgrammer(calc, radix, true);
+  }
+
+  /**
+   * Calculates the result of an integer expression in programmer mode, see {@link #calculateProgrammer(String, int)}.
+   *
+   * @param calc The expression as a string to be calculated.
+   * @param radix The base of the result: 2, 8, 10 or 16.
+   * @param record Whether the calculation is recorded in the history.
+   * @return The result of the calculation as a string, or the error message.
+   */
+  private static String calculateProgrammer(final String calc, final int radix, final boolean record) {
+      try {
+          // Check the base first, so that nothing is calculated or recorded for a result which cannot be displayed
+          if (radix != 2 && radix != 8 && radix != 10 && radix != 16) {
+              throw new IllegalArgumentException("Ungültige Basis");
+          }
+          final List<String> postfixTokens = infixToPostfix(tokenizeProgrammer(calc));
+          try {
+              final long result = evaluateProgrammerPostfix(postfixTokens);
+              if (record) {
+                  record(calc, BigDecimal.valueOf(result));
+              }
+              return formatRadix(result, radix);
+          } catch (ArithmeticException e) {
+              // Division by 0 stays an error, every other ArithmeticException is an overflow of the long
+              if (Objects.equals(e.getMessage(), "Kein Teilen durch 0")) {
+                  throw e;
+              }
+          }
+          final BigInteger result = evaluateProgrammerPostfixBigInteger(postfixTokens);
+          if (record) {
+              record(calc, new BigDecimal(result));
+          }
+          // Only an intermediate result overflowed, the result itself is shown like every other long
+          if (result.bitLength() < 64) {
+              return formatRadix(result.longValue(), radix);
+          }
+          return formatRadix(result, radix);
+      } catch (ArithmeticException e) {
+          return e.getMessage();
+      } catch (IllegalArgumentException e) {
+          return e.getMessage();
+      } catch (Exception e) {
+          return "Syntax Fehler3";
+      }
+  }
+
+  /**
+   * Tokenizes an expression of the programmer mode, breaking it into numbers (with base prefix), operators and parentheses.
+   * History references (Ans, #12) are replaced by their result as a decimal number.
+   *
+   * @param expression The expression to be tokenized.
+   * @return A list of tokens extracted from the expression.
+   * @throws IllegalArgumentException If the expression contains an unknown character or a base prefix without digits,
+   *                                  or a history reference does not exist or is not an integer.
+   */
+  public static List<String> tokenizeProgrammer(final String expression) {
+      final List<String> tokens = new ArrayList<>();
+      boolean isNegative = false;
+
+      int i = 0;
+      while (i < expression.length()) {
+          final char c = expression.charAt(i);
+
+          if (Character.isWhitespace(c)) {
+              i++;
+          } else if (c == '-' && (isNegative || tokens.isEmpty() || tokens.get(tokens.size() - 1).equals("(")
+                  || (isOperator(tokens.get(tokens.size() - 1)) && !tokens.get(tokens.size() - 1).equals("!")))) {
+              // A minus sign at the beginning, after an opening parenthesis or after an operator (except the factorial) belongs to the number
+              if (isNegative) {
+                  // Only the last of several minus signs can belong to the number, the others negate it (e.g. --5)
+                  tokens.add(NEGATE);
+              }
+              isNegative = true;
+              i++;
+          } else if (Character.isDigit(c)) {
+              // Numbers with a prefix (0x, 0o, 0b) may contain all digits of their base
+              int end = i + 1;
+              final int radix = i + 1 < expression.length() && c == '0' ? radixOfPrefix(expression.charAt(i + 1)) : 10;
+              if (radix != 10) {
+                  end = i + 2;
+              }
+              while (end < expression.length() && Character.digit(expression.charAt(end), radix) >= 0) {
+                  end++;
+              }
+              if (radix != 10 && end == i + 2) {
+                  // A prefix without digits (e.g. 0x) is not a number
+                  throw new IllegalArgumentException("Syntax Fehler");
+              }
+              tokens.add((isNegative ? "-" : "") + expression.substring(i, end));
+              isNegative = false;
+              i = end;
+          } else if ((expression.startsWith(ANS, i) || expression.startsWith(HISTORY_REFERENCE, i)) && referenceEnd(expression, i) > i) {
+              // Results from the history are used as integers, the evaluation only works with numbers
+              final int end = referenceEnd(expression, i);
+              final BigDecimal result = resolveHistoryReference((isNegative ? "-" : "") + expression.substring(i, end));
+              try {
+                  tokens.add(result.toBigIntegerExact().toString());
+              } catch (ArithmeticException e) {
+                  throw new IllegalArgumentException("Nur ganze Zahlen");
+              }
+              isNegative = false;
+              i = end;
+          } else {
+              if (isNegative) {
+                  // The minus sign is not followed by a number, so it negates what follows (e.g. -(1+2) or -~0)
+                  tokens.add(NEGATE);
+                  isNegative = false;
+              }
+              final String operator = programmerOperatorAt(expression, i);
+              tokens.add(operator);
+              i += operator.length();
+          }
+      }
+
+      if (isNegative) {
+          tokens.add("-");
+      }
+      return tokens;
+  }
+
+  /**
+   * Determines the base belonging to the character after the leading 0 of a number in programmer mode.
+   *
+   * @param prefix The character after the leading 0.
+   * @return 16 for x, 8 for o, 2 for b and 10 otherwise.
+   */
+  private static int radixOfPrefix(final char prefix) {
+      switch (Character.toLowerCase(prefix)) {
+          case 'x':
+              return 16;
+          case 'o':
+              return 8;
+          case 'b':
+              return 2;
+          default:
+              return 10;
+      }
+  }
+
+  /**
+   * Reads the operator or parenthesis at a position of an expression in programmer mode.
+   *
+   * @param expression The expression.
+   * @param position The position of the operator.
+   * @return The operator.
+   * @throws IllegalArgumentException If there is no known operator at this position.
+   */
+  private static String programmerOperatorAt(final String expression, final int position) {
+      for (final String operator : PROGRAMMER_WORD_OPERATORS) {
+          if (expression.startsWith(operator, position)) {
+              return operator;
+          }
+      }
+      final String operator = String.valueOf(expression.charAt(position));
+      if (operator.equals("(") || operator.equals(")") || (isOperator(operator) && !operator.equals(ROOT))) {
+          return operator;
+      }
+      throw new IllegalArgumentException("Syntax Fehler");
+  }
+
+  /**
+   * Evaluates an expression of the programmer mode in postfix notation on primitive longs.
+   *
+   * @param postfixTokens The list of tokens in postfix notation.
+   * @return The result of the expression.
+   * @throws ArithmeticException If a number or result does not fit into a long, or "Kein Teilen durch 0" for a division by 0.
+   * @throws IllegalArgumentException If there is a syntax error in the expression.
+   */
+  public static long evaluateProgrammerPostfix(final List<String> postfixTokens) {
+      final long[] stack = new long[postfixTokens.size()];
+      int size = 0;
+
+      for (final String token : postfixTokens) {
+          if (isRadixLiteral(token)) {
+              stack[size++] = parseLong(token);
+          } else if (token.equals(NOT) || token.equals(NEGATE) || token.equals("!")) {
+              if (size < 1) {
+                  throw new IllegalArgumentException("Syntax Fehler2");
+              }
+              if (token.equals(NOT)) {
+                  stack[size - 1] = ~stack[size - 1];
+              } else if (token.equals(NEGATE)) {
+                  stack[size - 1] = Math.negateExact(stack[size - 1]);
+              } else {
+                  stack[size - 1] = factorial(stack[size - 1]);
+              }
+          } else if (isOperator(token)) {
+              if (size < 2) {
+                  throw new IllegalArgumentException("Syntax Fehler2");
+              }
+              size--;
+              stack[size - 1] = applyProgrammerOperator(stack[size - 1], stack[size], token);
+          } else {
+              throw new IllegalArgumentException("Syntax Fehler1");
+          }
+      }
+
+      // If there is more than one number in the stack at the end, throw an exception
+      if (size != 1) {
+          throw new IllegalArgumentException("Syntax Fehler2");
+      }
+      return stack[0];
+  }
+
+  /**
+   * Applies a binary operator of the programmer mode to two longs. Overflows are detected exactly.
+   *
+   * @param operand1 The first operand for the operation.
+   * @param operand2 The second operand for the operation.
+   * @param operator The operator for the operation.
+   * @return The result of the operation.
+   * @throws ArithmeticException If the result does not fit into a long, or "Kein Teilen durch 0" for a division by 0.
+   * @throws IllegalArgumentException If the operator is not recognized or the operand is not allowed.
+   */
+  private static long applyProgrammerOperator(final long operand1, final long operand2, final String operator) {
+      switch (operator) {
+          case "+":
+              return Math.addExact(operand1, operand2);
+          case "-":
+              return Math.subtractExact(operand1, operand2);
+          case "*":
+              return Math.multiplyExact(operand1, operand2);
+          case "/":
+              if (operand2 == 0) {
+                  throw new ArithmeticException("Kein Teilen durch 0");
+              }
+              // The only division that overflows
+              if (operand1 == Long.MIN_VALUE && operand2 == -1) {
+                  throw new ArithmeticException("long overflow");
+              }
+              return operand1 / operand2;
+          case MOD:
+              if (operand2 == 0) {
+                  throw new ArithmeticException("Kein Teilen durch 0");
+              }
+              return Math.floorMod(operand1, operand2);
+          case "^":
+              return pow(operand1, operand2);
+          case AND:
+              return operand1 & operand2;
+          case OR:
+              return operand1 | operand2;
+          case XOR:
+              return operand1 ^ operand2;
+          case SHIFT_LEFT:
+              if (operand2 < 0) {
+                  throw new IllegalArgumentException("Domainfehler");
+              }
+              if (operand1 == 0) {
+                  return 0;
+              }
+              // Bits shifted out of the long (or into the sign bit) are an overflow
+              if (operand2 >= 64 || (operand1 << operand2) >> operand2 != operand1) {
+                  throw new ArithmeticException("long overflow");
+              }
+              return operand1 << operand2;
+          case SHIFT_RIGHT:
+              if (operand2 < 0) {
+                  throw new IllegalArgumentException("Domainfehler");
+              }
+              return operand2 < 64 ? operand1 >> operand2 : operand1 >> 63;
+          default:
+              throw new IllegalArgumentException("Unbekannter Operator: '" + operator + "'");
+      }
+  }
+
+  /**
+   * Calculates the power of a long to a non-negative exponent by repeated squaring. Overflows are detected exactly.
+   *
+   * @param base The base number.
+   * @param exponent The exponent.
+   * @return The result of raising the base to the power of the exponent.
+   * @throws ArithmeticException If the result does not fit into a long.
+   * @throws IllegalArgumentException If the exponent is negative.
+   */
+  private static long pow(long base, long exponent) {
+      if (exponent < 0) {
+          throw new IllegalArgumentException("Domainfehler");
+      }
+      long result = 1;
+      while (exponent > 0) {
+          if ((exponent & 1) == 1) {
+              result = Math.multiplyExact(result, base);
+          }
+          exponent >>= 1;
+          // Only square the base if it is needed again, otherwise it could overflow needlessly
+          if (exponent > 0) {
+              base = Math.multiplyExact(base, base);
+          }
+      }
+      return result;
+  }
+
+  /**
+   * Calculates the factorial of a long. Overflows are detected exactly.
+   *
+   * @param number The number for which the factorial is to be calculated.
+   * @return The factorial of the number.
+   * @throws ArithmeticException If the result does not fit into a long.
+   * @throws IllegalArgumentException If the number is negative or greater than 170.
+   */
+  private static long factorial(final long number) {
+      if (number < 0) {
+          throw new IllegalArgumentException("Domainfehler");
+      }
+      if (number > 170) {
+          throw new IllegalArgumentException("Wert zu groß");
+      }
+      long result = 1;
+      for (long i = 2; i <= number; i++) {
+          result = Math.multiplyExact(result, i);
+      }
+      return result;
+  }
+
+  /**
+   * Reads a number of the programmer mode into a long.
+   *
+   * @param token The number, optionally with a minus sign and base prefix.
+   * @return The value of the number.
+   * @throws ArithmeticException If the number does not fit into a long.
+   */
+  private static long parseLong(final String token) {
+      final boolean isNegative = token.startsWith("-");
+      final int start = isNegative ? 1 : 0;
+      if (token.length() > start + 1 && token.charAt(start) == '0' && radixOfPrefix(token.charAt(start + 1)) != 10) {
+          // 64-bit patterns, e.g. 0xFFFFFFFFFFFFFFFF is -1. The bases are powers of 2, so every digit is shifted in.
+          // Numbers with more digits than a pattern are positive, so they have to fit into 63 bits.
+          final int radix = radixOfPrefix(token.charAt(start + 1));
+          final int bitsPerDigit = Integer.numberOfTrailingZeros(radix);
+          final int bits = token.length() - start - 2 > patternDigits(radix) ? 63 : 64;
+          long value = 0;
+          for (int i = start + 2; i < token.length(); i++) {
+              if (value >>> (bits - bitsPerDigit) != 0) {
+                  throw new ArithmeticException("long overflow");
+              }
+              value = (value << bitsPerDigit) | Character.digit(token.charAt(i), radix);
+          }
+          return isNegative ? Math.negateExact(value) : value;
+      }
+      try {
+          return Long.parseLong(token);
+      } catch (NumberFormatException e) {
+          throw new ArithmeticException("long overflow");
+      }
+  }
+
+  /**
+   * Evaluates an expression of the programmer mode in postfix notation with BigInteger.
+   * Used if the result does not fit into a long, see {@link #evaluateProgrammerPostfix(List)}.
+   *
+   * @param postfixTokens The list of tokens in postfix notation.
+   * @return The result of the expression.
+   * @throws ArithmeticException If there is a division by 0.
+   * @throws IllegalArgumentException If there is a syntax error in the expression or the result is too large.
+   */
+  public static BigInteger evaluateProgrammerPostfixBigInteger(final List<String> postfixTokens) {
+      final List<BigInteger> stack = new ArrayList<>();
+
+      for (final String token : postfixTokens) {
+          if (isRadixLiteral(token)) {
+              stack.add(parseBigInteger(token));
+          } else if (token.equals(NOT) || token.equals(NEGATE) || token.equals("!")) {
+              if (stack.isEmpty()) {
+                  throw new IllegalArgumentException("Syntax Fehler2");
+              }
+              final BigInteger operand = stack.remove(stack.size() - 1);
+              if (token.equals(NOT)) {
+                  stack.add(operand.not());
+              } else if (token.equals(NEGATE)) {
+                  stack.add(operand.negate());
+              } else if (operand.signum() < 0) {
+                  throw new IllegalArgumentException("Domainfehler");
+              } else {
+                  stack.add(factorial(new BigDecimal(operand)).toBigIntegerExact());
+              }
+          } else if (isOperator(token)) {
+              if (stack.size() < 2) {
+                  throw new IllegalArgumentException("Syntax Fehler2");
+              }
+              final BigInteger operand2 = stack.remove(stack.size() - 1);
+              final BigInteger operand1 = stack.remove(stack.size() - 1);
+              stack.add(applyProgrammerOperator(operand1, operand2, token));
+          } else {
+              throw new IllegalArgumentException("Syntax Fehler1");
+          }
+      }
+
+      // If there is more than one number in the stack at the end, throw an exception
+      if (stack.size() != 1) {
+          throw new IllegalArgumentException("Syntax Fehler2");
+      }
+      return stack.get(0);
+  }
+
+  /**
+   * Applies a binary operator of the programmer mode to two BigIntegers, with the same results as for longs.
+   *
+   * @param operand1 The first operand for the operation.
+   * @param operand2 The second operand for the operation.
+   * @param operator The operator for the operation.
+   * @return The result of the operation.
+   * @throws ArithmeticException If there is a division by 0.
+   * @throws IllegalArgumentException If the operator is not recognized, the operand is not allowed or the result is too large.
+   */
+  private static BigInteger applyProgrammerOperator(final BigInteger operand1, final BigInteger operand2, final String operator) {
+      switch (operator) {
+          case "+":
+              return operand1.add(operand2);
+          case "-":
+              return operand1.subtract(operand2);
+          case "*":
+              return operand1.multiply(operand2);
+          case "/":
+              if (operand2.signum() == 0) {
+                  throw new ArithmeticException("Kein Teilen durch 0");
+              }
+              return operand1.divide(operand2);
+          case MOD: {
+              if (operand2.signum() == 0) {
+                  throw new ArithmeticException("Kein Teilen durch 0");
+              }
+              // Like Math.floorMod, the result has the sign of the divisor
+              final BigInteger remainder = operand1.remainder(operand2);
+              return remainder.signum() != 0 && remainder.signum() != operand2.signum() ? remainder.add(operand2) : remainder;
+          }
+          case "^":
+              if (operand2.signum() < 0) {
+                  throw new IllegalArgumentException("Domainfehler");
+              }
+              // For -1, 0 and 1 only the parity of the exponent matters, so any exponent is allowed
+              if (operand1.abs().compareTo(BigInteger.ONE) <= 0) {
+                  if (operand2.signum() == 0) {
+                      return BigInteger.ONE;
+                  }
+                  return operand2.testBit(0) ? operand1 : operand1.multiply(operand1);
+              }
+              // The result has at least (bitLength - 1) * exponent bits
+              if (operand2.compareTo(BigInteger.valueOf(MAX_PROGRAMMER_BITS / (operand1.abs().bitLength() - 1))) > 0) {
+                  throw new IllegalArgumentException("Wert zu groß");
+              }
+              return operand1.pow(operand2.intValue());
+          case AND:
+              return operand1.and(operand2);
+          case OR:
+              return operand1.or(operand2);
+          case XOR:
+              return operand1.xor(operand2);
+          case SHIFT_LEFT:
+              if (operand2.signum() < 0) {
+                  throw new IllegalArgumentException("Domainfehler");
+              }
+              if (operand2.compareTo(BigInteger.valueOf(MAX_PROGRAMMER_BITS)) > 0) {
+                  throw new IllegalArgumentException("Wert zu groß");
+              }
+              return operand1.shiftLeft(operand2.intValue());
+          case SHIFT_RIGHT:
+              if (operand2.signum() < 0) {
+                  throw new IllegalArgumentException("Domainfehler");
+              }
+              // Shifting further than all bits leaves only the sign
+              return operand2.bitLength() > 31 ? BigInteger.valueOf(operand1.signum() < 0 ? -1 : 0) : operand1.shiftRight(operand2.intValue());
+          default:
+              throw new IllegalArgumentException("Unbekannter Operator: '" + operator + "'");
+      }
+  }
+
+  /**
+   * Reads a number of the programmer mode into a BigInteger, with the same value as {@link #parseLong(String)} where that fits.
+   *
+   * @param token The number, optionally with a minus sign and base prefix.
+   * @return The value of the number.
+   */
+  private static BigInteger parseBigInteger(final String token) {
+      final boolean isNegative = token.startsWith("-");
+      final int start = isNegative ? 1 : 0;
+      if (token.length() > start + 1 && token.charAt(start) == '0' && radixOfPrefix(token.charAt(start + 1)) != 10) {
+          final int radix = radixOfPrefix(token.charAt(start + 1));
+          final String digits = token.substring(start + 2);
+          BigInteger value = new BigInteger(digits, radix);
+          // Up to 64 bits, the digits are a two's complement pattern
+          if (digits.length() <= patternDigits(radix) && value.bitLength() <= 64) {
+              value = BigInteger.valueOf(value.longValue());
+          }
+          return isNegative ? value.negate() : value;
+      }
+      return new BigInteger(token);
+  }
+
+  /**
+   * Determines the number of digits of a 64-bit two's complement pattern in a base.
+   *
+   * @param radix The base: 2, 8 or 16.
+   * @return 64 for binary, 22 for octal and 16 for hexadecimal numbers.
+   */
+  private static int patternDigits(final int radix) {
+      final int bitsPerDigit = Integer.numberOfTrailingZeros(radix);
+      return (64 + bitsPerDigit - 1) / bitsPerDigit;
+  }
+
+  /**
+   * Formats a result of the programmer mode in a base. Hexadecimal, octal and binary results are shown as 64-bit two's complement.
+   *
+   * @param value The result.
+   * @param radix The base: 2, 8, 10 or 16.
+   * @return The formatted result, with prefix (0x, 0o, 0b) for bases other than 10.
+   * @throws IllegalArgumentException If the base is not supported.
+   */
+  public static String formatRadix(final long value, final int radix) {
+      switch (radix) {
+          case 10:
+              return Long.toString(value);
+          case 16:
+              return "0x" + Long.toHexString(value).toUpperCase(Locale.ROOT);
+          case 8:
+              return "0o" + Long.toOctalString(value);
+          case 2:
+              return "0b" + Long.toBinaryString(value);
+          default:
+              throw new IllegalArgumentException("Ungültige Basis");
+      }
+  }
+
+  /**
+   * Formats a result of the programmer mode which does not fit into a long in a base. Negative results get a minus sign.
+   * Hexadecimal, octal and binary results are padded with zeros to more digits than a 64-bit pattern, so that they cannot be
+   * mistaken for one (2^63 is 0x08000000000000000, while 0x8000000000000000 is -2^63).
+   *
+   * @param value The result.
+   * @param radix The base: 2, 8, 10 or 16.
+   * @return The formatted result, with prefix (0x, 0o, 0b) for bases other than 10.
+   * @throws IllegalArgumentException If the base is not supported.
+   */
+  public static String formatRadix(final BigInteger value, final int radix) {
+      final String prefix;
+      switch (radix) {
+          case 10:
+              return value.toString();
+          case 16:
+              prefix = "0x";
+              break;
+          case 8:
+              prefix = "0o";
+              break;
+          case 2:
+              prefix = "0b";
+              break;
+          default:
+              throw new IllegalArgumentException("Ungültige Basis");
+      }
+      final StringBuilder digits = new StringBuilder(value.abs().toString(radix).toUpperCase(Locale.ROOT));
+      while (digits.length() <= patternDigits(radix)) {
+          digits.insert(0, '0');
+      }
+      return (value.signum() < 0 ? "-" : "") + prefix + digits;
+  }
+  
+  /**
+   * Converts a mathematical expression from infix notation to postfix notation.
+   *
+   * @param infixTokens The list of tokens in infix notation.
+   * @return The list of tokens in postfix notation.
+   */
+  public static List<String> infixToPostfix(final List<String> infixTokens) {
+      final List<String> postfixTokens = new ArrayList<>();
+      final Stack<String> stack = new Stack<>();
+  
+      for (final String token : infixTokens) {
+  
+          if (isOperand(token)) {
+              postfixTokens.add(token);
+          } else if (isFunction(token)) {
+              stack.push(token);
+          } else if (isPrefixOperator(token)) {
+              // A prefix operator stands where an operand is expected, so no operator on the stack is complete yet (e.g. ~~0 or 2^√4)
+              stack.push(token);
+          } else if (isOperator(token) && token.equals("-")) {
+              while (!stack.isEmpty() && precedence(stack.peek()) >= precedence(token) && !isFunction(stack.peek())) {
+                  postfixTokens.add(stack.pop());
+              }
+              stack.push(token);
+          } else if (isOperator(token)) {
+              while (!stack.isEmpty() && precedence(stack.peek()) >= precedence(token) && !isFunction(stack.peek())) {
+                  postfixTokens.add(stack.pop());
+              }
+              stack.push(token);
+          } else if (token.equals("(")) {
+              stack.push(token);
+          } else if (token.equals(")")) {
+              while (!stack.isEmpty() && !stack.peek().equals("(")) {
+                  postfixTokens.add(stack.pop());
+              }
+              if (!stack.isEmpty() && stack.peek().equals("(")) {
+                  stack.pop(); // Remove the opening parenthesis
+                  if (!stack.isEmpty() && isFunction(stack.peek())) {
+                      postfixTokens.add(stack.pop());
+                  }
+              }
+          }
+      }
+  
+      while (!stack.isEmpty()) {
+          postfixTokens.add(stack.pop());
+      }
+  
+      return postfixTokens;
+  }
+  
+  /**
+   * Checks if the given token represents a recognized trigonometric function.
+   *
+   * @param token The token to be checked.
+   * @return true if the token represents a trigonometric function, false otherwise.
+   */
+  public static boolean isFunction(final String token) {
+      // Check if the token is one of the recognized trigonometric functions
+      return token.equals("sin(") || token.equals("cos(") || token.equals("tan(") ||
+              token.equals("sin⁻¹(") || token.equals("cos⁻¹(") || token.equals("tan⁻¹(");
+  }
+  
+  /**
+   * Checks if a token is a number, i.e. if a BigDecimal can be created from it.
+   * <p>
+   * The token is checked character by character instead of creating a BigDecimal, so the number is only parsed once, when it is evaluated.
+   * A number consists of an optional sign, digits with an optional decimal point and an optional exponent (e.g. -1.5e-300).
+   *
+   * @param token The token to be checked.
+   * @return True if the token is a number, false otherwise.
+   */
+  public static boolean isNumber(final String token) {
+      int i = 0;
+      if (i < token.length() && (token.charAt(i) == '-' || token.charAt(i) == '+')) {
+          i++;
+      }
+
+      // Digits with an optional decimal point, at least one digit is needed
+      int digits = 0;
+      boolean hasPoint = false;
+      for (; i < token.length(); i++) {
+          final char c = token.charAt(i);
+          if (c >= '0' && c <= '9') {
+              digits++;
+          } else if (c == '.' && !hasPoint) {
+              hasPoint = true;
+          } else {
+              break;
+          }
+      }
+      if (digits == 0) {
+          return false;
+      }
+      if (i == token.length()) {
+          return true;
+      }
+
+      // Optional exponent. It has to fit into an int, like the exponents BigDecimal accepts
+      if (token.charAt(i) != 'e' && token.charAt(i) != 'E') {
+          return false;
+      }
+      i++;
+      if (i < token.length() && (token.charAt(i) == '-' || token.charAt(i) == '+')) {
+          i++;
+      }
+      final int exponentStart = i;
+      for (; i < token.length(); i++) {
+          if (token.charAt(i) < '0' || token.charAt(i) > '9') {
+              return false;
+          }
+      }
+      return i > exponentStart && i - exponentStart <= 9;
+  }
+  
+  /**
+   * Checks if a token is an operand, i.e. a number or a variable.
+   *
+   * @param token The token to be checked.
+   * @return True if the token is an operand, false otherwise.
+   */
+  public static boolean isOperand(final String token) {
+      return isNumber(token) || isVariable(token) || isHistoryReference(token) || isRadixLiteral(token);
+  }
+
+  /**
+   * Checks if a token is a number of the programmer mode: an integer, optionally with a minus sign and a base prefix (0x, 0o, 0b).
+   *
+   * @param token The token to be checked.
+   * @return True if the token is a number of the programmer mode, false otherwise.
+   */
+  public static boolean isRadixLiteral(final String token) {
+      int start = token.startsWith("-") ? 1 : 0;
+      int radix = 10;
+      if (token.length() > start + 2 && token.charAt(start) == '0' && radixOfPrefix(token.charAt(start + 1)) != 10) {
+          radix = radixOfPrefix(token.charAt(start + 1));
+          start += 2;
+      }
+      if (token.length() == start) {
+          return false;
+      }
+      for (int i = start; i < token.length(); i++) {
+          if (Character.digit(token.charAt(i), radix) < 0) {
+              return false;
+          }
+      }
+      return true;
+  }
+
+  /**
+   * Checks if a token is a reference to the history (Ans, #12), optionally with a leading minus sign.
+   *
+   * @param token The token to be checked.
+   * @return True if the token is a history reference, false otherwise.
+   */
+  public static boolean isHistoryReference(final String token) {
+      final int start = token.startsWith("-") ? 1 : 0;
+      if (token.startsWith(ANS, start)) {
+          return token.length() == start + ANS.length();
+      }
+      return token.startsWith(HISTORY_REFERENCE, start) && token.length() > start + 1
+              && token.substring(start + 1).chars().allMatch(Character::isDigit);
+  }
+
+  /**
+   * Looks up the result a history reference (Ans, #12) refers to.
+   *
+   * @param token The history reference, optionally with a leading minus sign.
+   * @return The referenced result.
+   * @throws IllegalArgumentException If no history is used or the referenced entry does not exist.
+   */
+  public static BigDecimal resolveHistoryReference(final String token) {
+      return resolveHistoryReference(token, history);
+  }
+
+  /**
+   * Looks up the result a history reference (Ans, #12) refers to in a given history.
+   *
+   * @param token The history reference, optionally with a leading minus sign.
+   * @param calculationHistory The history, or null if no history is used.
+   * @return The referenced result.
+   * @throws IllegalArgumentException If no history is used or the referenced entry does not exist.
+   */
+  private static BigDecimal resolveHistoryReference(final String token, final CalculationHistory calculationHistory) {
+      if (calculationHistory == null) {
+          throw new IllegalArgumentException("Kein Verlauf");
+      }
+
+      final boolean isNegative = token.startsWith("-");
+      final String reference = isNegative ? token.substring(1) : token;
+      final BigDecimal result;
+      try {
+          if (reference.equals(ANS)) {
+              result = calculationHistory.ans();
+          } else {
+              result = calculationHistory.result(Long.parseLong(reference.substring(HISTORY_REFERENCE.length())));
+          }
+      } catch (final NumberFormatException e) {
+          throw new IllegalArgumentException("Ungültiger Verlaufseintrag");
+      } catch (final UncheckedIOException e) {
+          // The history was closed or could not be mapped again
+          throw new IllegalArgumentException("Kein Verlauf");
+      }
+      return isNegative ? result.negate() : result;
+  }
+
+  /**
+   * Checks if a token is a variable of the columnar evaluation (x, x0, x1, ...), optionally with a leading minus sign.
+   *
+   * @param token The token to be checked.
+   * @return True if the token is a variable, false otherwise.
+   */
+  public static boolean isVariable(final String token) {
+      final int start = token.startsWith("-") ? 1 : 0;
+      if (!token.startsWith(VARIABLE, start)) {
+          return false;
+      }
+      // Everything after the x has to be the column index
+      for (int i = start + 1; i < token.length(); i++) {
+          if (!Character.isDigit(token.charAt(i))) {
+              return false;
+          }
+      }
+      return true;
+  }
+
+  /**
+   * Checks if the given token represents a recognized non-functional operator.
+   *
+   * @param token The token to be checked.
+   * @return true if the token represents a non-functional operator, false otherwise.
+   */
+  public static boolean isOperator(final String token) {
+      // Check if the token is one of the recognized non-functional operators
+      return token.equals("+") || token.equals("-") || token.equals("*") || token.equals("/") ||
+              token.equals("^") || token.equals("√") || token.equals("!") || isProgrammerOperator(token);
+  }
+
+  /**
+   * Checks if the given token represents one of the operators only available in programmer mode.
+   *
+   * @param token The token to be checked.
+   * @return true if the token represents a programmer mode operator, false otherwise.
+   */
+  public static boolean isProgrammerOperator(final String token) {
+      return token.equals(AND) || token.equals(OR) || token.equals(XOR) || token.equals(NOT) || token.equals(NEGATE) ||
+              token.equals(SHIFT_LEFT) || token.equals(SHIFT_RIGHT) || token.equals(MOD);
+  }
+
+  /**
+   * Checks if the given token represents a unary operator written in front of its operand.
+   *
+   * @param token The token to be checked.
+   * @return true if the token represents a prefix operator, false otherwise.
+   */
+  public static boolean isPrefixOperator(final String token) {
+      return token.equals(ROOT) || token.equals(NOT) || token.equals(NEGATE);
+  }
+  
+  /**
+   * Determines the precedence of an operator.
+   * Precedence rules determine the order in which expressions involving both unary and binary operators are evaluated.
+   *
+   * @param operator The operator to be checked.
+   * @return The precedence of the operator.
+   * @throws IllegalArgumentException If the operator is not recognized.
+   */
+  public static int precedence(final String operator) {
+      // If the operator is an opening parenthesis, return 0
+      switch (operator) {
+          case "(":
+              return 0;
+  
+          // If the operator is bitwise or, return 1
+          case OR:
+              return 1;
+  
+          // If the operator is bitwise exclusive or, return 2
+          case XOR:
+              return 2;
+  
+          // If the operator is bitwise and, return 3
+          case AND:
+              return 3;
+  
+          // If the operator is a shift, return 4
+          case SHIFT_LEFT:
+          case SHIFT_RIGHT:
+              return 4;
+  
+          // If the operator is addition or subtraction, return 5
+          case "+":
+          case "-":
+              return 5;
+  
+          // If the operator is multiplication, division or modulo, return 6
+          case "*":
+          case "/":
+          case MOD:
+              return 6;
+  
+          // If the operator is exponentiation, return 7
+          case "^":
+              return 7;
+  
+          // If the operator is square root, bitwise not or negation, return 8
+          case "√":
+          case NOT:
+          case NEGATE:
+              return 8;
+  
+          // If the operator is factorial, return 9
+          case "!":
+              return 9;
+  
+          // If the operator is sine, cosine, or tangent, return 10
+          case "sin(":
+          case "cos(":
+          case "tan(":
           case "sin⁻¹(":
           case "cos⁻¹(":
           case "tan⁻¹(":
-              return 6;
+              return 10;
   
           // If the operator is not recognized, throw an exception
           default:
@@ -0,0 +1,234 @@
+package praktikum2;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ColumnarEquivalenceCheck
+ * <p>
+ * Checks that the columnar evaluation of RechenMaxCalculator.evaluate() gives the same results as evaluating the expression
+ * value by value with RechenMaxCalculator.evaluatePostfix(), element for element. Values evaluatePostfix rejects have to be NaN.
+ * <p>
+ * Division, power, square root, factorial and the trigonometric functions have to give exactly the same double.
+ * + - * work on the doubles, while evaluatePostfix works exactly on their shortest decimal representation (BigDecimal.valueOf),
+ * so these may differ by the rounding of the operands: at most 4 ulps of the largest operand or result.
+ * <p>
+ * In chained expressions the intermediate results are doubles, so these differences are passed on to the following operations.
+ * The allowed difference of a chained expression is derived step by step from its intermediate values: + - * add their rounding
+ * to the differences of their operands, the other operations pass the differences of their operands on according to their derivative
+ * and may additionally round to a neighbouring value (one unit in the 11th digit, or in the 10th decimal place for trigonometric functions).
+ * <pre>
+ * java -cp calculator.jar praktikum2.ColumnarEquivalenceCheck
+ * </pre>
+ * Prints the number of differences per expression and exits with status 1 if there are any.
+ */
+public class ColumnarEquivalenceCheck {
+
+  // Number of input values per expression
+  private static final int VALUES = 20000;
+
+  // Operations which have to give exactly the same results, see RechenMaxCalculator.evaluate(String, double[][], double[])
+  private static final String[] EXACT_EXPRESSIONS = {
+          "x/3", "2^x", "x^0,5", "x^3", "1÷x", "x0/x1", "x0^x1", "√(x)", "x!", "-x!",
+          "sin(x)", "cos(x)", "tan(x)", "sin⁻¹(x)", "cos⁻¹(x)", "tan⁻¹(x)"
+  };
+
+  // Operations which may differ by the rounding of their operands
+  private static final String[] ROUNDED_EXPRESSIONS = {
+          "π*x", "x*0,5", "x0*x1", "x+1,5", "x-x1", "x0+x1"
+  };
+
+  // Chained operations, whose intermediate results are doubles
+  private static final String[] CHAINED_EXPRESSIONS = {
+          "x^2+3*x-1", "√(x0)+sin(x1)-x0/x1", "(x0+1)/3", "x0*x1-x0/3", "√(x*x+1)", "(x0-x1)^2", "sin(x0*x1)+cos(x0+x1)"
+  };
+
+  // Modes of the comparison
+  private static final int EXACT = 0;
+  private static final int OPERAND_ROUNDING = 1;
+  private static final int CHAINED = 2;
+
+  public static void main(final String[] args) {
+      final double[] x0 = new double[VALUES];
+      final double[] x1 = new double[VALUES];
+      for (int i = 0; i < VALUES; i++) {
+          // Integers, fractions and values between -1 and 1, positive and negative
+          x0[i] = i % 4 == 0 ? i / 4 - 2500 : i % 4 == 1 ? (i - VALUES / 2) * 0.037 : (i - VALUES / 2) / (double) VALUES * 2.2;
+          x1[i] = (i % 97) * 0.31 - 7;
+      }
+
+      int differences = 0;
+      for (final String expression : EXACT_EXPRESSIONS) {
+          differences += check(expression, x0, x1, EXACT);
+      }
+      for (final String expression : ROUNDED_EXPRESSIONS) {
+          differences += check(expression, x0, x1, OPERAND_ROUNDING);
+      }
+      for (final String expression : CHAINED_EXPRESSIONS) {
+          differences += check(expression, x0, x1, CHAINED);
+      }
+
+      if (differences > 0) {
+          System.exit(1);
+      }
+  }
+
+  /**
+   * Compares the columnar evaluation of an expression with the per-value evaluation and prints the number of differences.
+   *
+   * @param expression The expression to check.
+   * @param x0 The first input column.
+   * @param x1 The second input column.
+   * @param mode EXACT, OPERAND_ROUNDING or CHAINED, see the class description.
+   * @return The number of differences.
+   */
+  private static int check(final String expression, final double[] x0, final double[] x1, final int mode) {
+      final double[] out = new double[VALUES];
+      RechenMaxCalculator.evaluate(expression, new double[][] {x0, x1}, out);
+
+      final List<String> postfixTokens = RechenMaxCalculator.infixToPostfix(
+              RechenMaxCalculator.tokenize(RechenMaxCalculator.normalize(expression)));
+      int expressionDifferences = 0;
+      double largestDifference = 0;
+      for (int i = 0; i < VALUES; i++) {
+          final double expected = evaluateValue(postfixTokens, x0[i], x1[i]);
+          final double tolerance;
+          if (mode == CHAINED) {
+              tolerance = chainTolerance(postfixTokens, x0[i], x1[i]);
+          } else if (mode == OPERAND_ROUNDING) {
+              tolerance = 4 * Math.ulp(Math.max(Math.max(Math.abs(x0[i]), Math.abs(x1[i])), Math.abs(expected)));
+          } else {
+              tolerance = 0;
+          }
+          if (!Double.isNaN(expected) && expected != out[i]) {
+              largestDifference = Math.max(largestDifference, Math.abs(expected - out[i]));
+          }
+          final boolean equal = Double.isNaN(expected) ? Double.isNaN(out[i]) : expected == out[i] || Math.abs(expected - out[i]) <= tolerance;
+          if (!equal) {
+              if (expressionDifferences < 3) {
+                  System.out.println("  " + expression + " at x0=" + x0[i] + ", x1=" + x1[i] + ": " + out[i] + " instead of " + expected);
+              }
+              expressionDifferences++;
+          }
+      }
+      System.out.println(expression + ": " + expressionDifferences + " differences, largest deviation " + largestDifference);
+      return expressionDifferences;
+  }
+
+  /**
+   * Determines how much the columnar result of a chained expression may differ from evaluatePostfix for one row.
+   * The expression is evaluated on doubles like the columnar evaluation, and for every intermediate result the possible
+   * difference is carried along (see the class description).
+   *
+   * @param postfixTokens The expression in postfix notation.
+   * @param x0 The value of the first column.
+   * @param x1 The value of the second column.
+   * @return The allowed difference of the result.
+   * @throws IllegalArgumentException If the expression contains an operation not supported by the check.
+   */
+  private static double chainTolerance(final List<String> postfixTokens, final double x0, final double x1) {
+      // Value and possible difference of every entry of the stack
+      final double[] values = new double[postfixTokens.size()];
+      final double[] bounds = new double[postfixTokens.size()];
+      int size = 0;
+
+      for (final String token : postfixTokens) {
+          if (RechenMaxCalculator.isVariable(token)) {
+              final double value = token.endsWith("1") ? x1 : x0;
+              values[size] = token.startsWith("-") ? -value : value;
+              bounds[size++] = 0;
+          } else if (RechenMaxCalculator.isNumber(token)) {
+              values[size] = Double.parseDouble(token);
+              bounds[size++] = 0;
+          } else if (token.equals(RechenMaxCalculator.ROOT) || token.equals("sin(") || token.equals("cos(")) {
+              final double a = values[size - 1];
+              final double boundA = bounds[size - 1];
+              final double result;
+              final double derivative;
+              if (token.equals(RechenMaxCalculator.ROOT)) {
+                  result = Math.sqrt(a);
+                  derivative = 1 / (2 * result);
+              } else {
+                  result = token.equals("sin(") ? Math.sin(Math.toRadians(a)) : Math.cos(Math.toRadians(a));
+                  derivative = Math.PI / 180;
+              }
+              values[size - 1] = result;
+              bounds[size - 1] = boundA == 0 ? 0 : derivative * boundA + roundingUnit(token, result);
+          } else {
+              final double a = values[size - 2];
+              final double b = values[size - 1];
+              final double boundA = bounds[size - 2];
+              final double boundB = bounds[size - 1];
+              final double result;
+              final double bound;
+              switch (token) {
+                  case "+":
+                  case "-":
+                      result = token.equals("+") ? a + b : a - b;
+                      bound = boundA + boundB + 4 * Math.ulp(Math.max(Math.max(Math.abs(a), Math.abs(b)), Math.abs(result)));
+                      break;
+                  case "*":
+                      result = a * b;
+                      bound = Math.abs(a) * boundB + Math.abs(b) * boundA + boundA * boundB
+                              + 4 * Math.ulp(Math.max(Math.max(Math.abs(a), Math.abs(b)), Math.abs(result)));
+                      break;
+                  case "/":
+                      result = a / b;
+                      bound = boundA == 0 && boundB == 0 ? 0 : (boundA + Math.abs(result) * boundB) / (Math.abs(b) - boundB) + roundingUnit(token, result);
+                      break;
+                  case "^":
+                      result = Math.pow(a, b);
+                      bound = boundA == 0 && boundB == 0 ? 0
+                              : Math.abs(result) * (Math.abs(b / a) * boundA + Math.abs(Math.log(Math.abs(a))) * boundB) + roundingUnit(token, result);
+                      break;
+                  default:
+                      throw new IllegalArgumentException("Nicht unterstützt: " + token);
+              }
+              size--;
+              values[size - 1] = result;
+              bounds[size - 1] = bound;
+          }
+      }
+      return bounds[0];
+  }
+
+  /**
+   * Returns the difference caused by rounding a result of an operation to a neighbouring value.
+   *
+   * @param operator The operation.
+   * @param result The result of the operation.
+   * @return One unit in the 10th decimal place for trigonometric functions, one unit in the 11th significant digit otherwise.
+   */
+  private static double roundingUnit(final String operator, final double result) {
+      if (operator.equals("sin(") || operator.equals("cos(")) {
+          return 1e-10;
+      }
+      return result == 0 ? 0 : Math.pow(10, Math.floor(Math.log10(Math.abs(result))) - 10);
+  }
+
+  /**
+   * Evaluates a postfix expression for one row with evaluatePostfix(), the way a per-value loop would.
+   *
+   * @param postfixTokens The expression in postfix notation.
+   * @param x0 The value of the first column.
+   * @param x1 The value of the second column.
+   * @return The result, or NaN if evaluatePostfix rejects the value.
+   */
+  private static double evaluateValue(final List<String> postfixTokens, final double x0, final double x1) {
+      final List<String> tokens = new ArrayList<>(postfixTokens.size());
+      for (final String token : postfixTokens) {
+          if (RechenMaxCalculator.isVariable(token)) {
+              final double value = token.endsWith("1") ? x1 : x0;
+              tokens.add(BigDecimal.valueOf(token.startsWith("-") ? -value : value).toString());
+          } else {
+              tokens.add(token);
+          }
+      }
+      try {
+          return RechenMaxCalculator.evaluatePostfix(tokens).doubleValue();
+      } catch (final RuntimeException e) {
+          return Double.NaN;
+      }
+  }
+}
@@ -0,0 +1,67 @@
+package praktikum2;
+
+/**
+ * ProgrammerRoundTripCheck
+ * <p>
+ * Checks that every result of RechenMaxCalculator.calculateProgrammer() can be entered again: calculating a displayed
+ * result has to give the same result, and the same value in base 10. The expressions cover results of the long evaluation
+ * and of the BigInteger evaluation, positive and negative, around the limits of 64-bit patterns.
+ * <pre>
+ * java -cp calculator.jar praktikum2.ProgrammerRoundTripCheck
+ * </pre>
+ * Prints every result which does not round-trip and exits with status 1 if there are any.
+ */
+public class ProgrammerRoundTripCheck {
+
+  // Bases of the programmer mode
+  private static final int[] RADICES = {2, 8, 10, 16};
+
+  // Results of the long evaluation
+  private static final String[] LONG_EXPRESSIONS = {
+          "0", "1", "-1", "255", "~0", "0x7FFFFFFFFFFFFFFF", "0x8000000000000000", "-9223372036854775807 - 1",
+          "1 << 62", "-(1 << 62)", "0o1777777777777777777777", "0b1 << 63", "2^64 - 2^64", "(1 << 70) >> 10"
+  };
+
+  // Results of the BigInteger evaluation
+  private static final String[] BIG_INTEGER_EXPRESSIONS = {
+          "0x7FFFFFFFFFFFFFFF + 1", "-0x8000000000000000", "9223372036854775807 * 2", "2^64", "2^64 - 1", "-(2^64)",
+          "-9223372036854775807 - 2", "1 << 70", "-(1 << 70)", "30!", "-(30!)", "0x00000000000000001 << 63"
+  };
+
+  public static void main(final String[] args) {
+      int failures = 0;
+      for (final String expression : LONG_EXPRESSIONS) {
+          failures += check(expression);
+      }
+      for (final String expression : BIG_INTEGER_EXPRESSIONS) {
+          failures += check(expression);
+      }
+      System.out.println(failures + " results do not round-trip");
+
+      if (failures > 0) {
+          System.exit(1);
+      }
+  }
+
+  /**
+   * Calculates an expression in every base and checks that the displayed results give the same result again.
+   *
+   * @param expression The expression to check.
+   * @return The number of bases in which the result does not round-trip.
+   */
+  private static int check(final String expression) {
+      final String decimal = RechenMaxCalculator.calculateProgrammer(expression, 10);
+      int failures = 0;
+      for (final int radix : RADICES) {
+          final String result = RechenMaxCalculator.calculateProgrammer(expression, radix);
+          final String again = RechenMaxCalculator.calculateProgrammer(result, radix);
+          final String againDecimal = RechenMaxCalculator.calculateProgrammer(result, 10);
+          if (!again.equals(result) || !againDecimal.equals(decimal)) {
+              System.out.println("  " + expression + " in base " + radix + ": " + result + " gives " + again + " (" + againDecimal
+                      + " instead of " + decimal + ")");
+              failures++;
+          }
+      }
+      return failures;
+  }
+}
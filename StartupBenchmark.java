@@ -0,0 +1,78 @@
+package praktikum2;
+
+import java.util.Arrays;
+
+/**
+ * StartupBenchmark
+ * <p>
+ * Measures the latency of the first calculations after the start of the JVM: the time to the first result and the
+ * latencies of the first 100 calls of RechenMaxCalculator.calculate().
+ * <p>
+ * Every run has to be a fresh JVM, otherwise the calculator is already warm:
+ * <pre>
+ * java -cp calculator.jar praktikum2.StartupBenchmark cold
+ * java -cp calculator.jar praktikum2.StartupBenchmark warm
+ * java -cp calculator.jar praktikum2.StartupBenchmark warm 200
+ * java -XX:SharedArchiveFile=calculator.jsa -cp calculator.jar praktikum2.StartupBenchmark cold
+ * </pre>
+ * "cold" calculates right away, "warm" calls RechenMaxCalculator.warmUp() first and reports its duration separately.
+ * An optional number of iterations after "warm" calls RechenMaxCalculator.warmUp(int) instead.
+ */
+public class StartupBenchmark {
+
+  // Number of calls measured after the start
+  private static final int CALLS = 100;
+
+  // Expressions as a user would enter them, different from the warm-up corpus
+  private static final String[] EXPRESSIONS = {
+          "12+7*3", "144÷12", "√(81)+2^3", "7!-1", "sin(45)*cos(45)", "3,5e4-1,2e3", "(1+2)*(3+4)", "tan⁻¹(0,5)", "2^0,5", "99÷7"
+  };
+
+  public static void main(final String[] args) {
+      final long start = System.nanoTime();
+      final boolean warm = args.length > 0 && args[0].equals("warm");
+      final int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+
+      long warmUpNanos = 0;
+      if (warm) {
+          RechenMaxCalculator.warmUp(iterations);
+          warmUpNanos = System.nanoTime() - start;
+      }
+
+      final long[] latencies = new long[CALLS];
+      long firstResult = 0;
+      for (int i = 0; i < CALLS; i++) {
+          final long before = System.nanoTime();
+          RechenMaxCalculator.calculate(EXPRESSIONS[i % EXPRESSIONS.length]);
+          final long after = System.nanoTime();
+          latencies[i] = after - before;
+          if (i == 0) {
+              firstResult = after - start;
+          }
+      }
+
+      final long total = Arrays.stream(latencies).sum();
+      final long[] sorted = latencies.clone();
+      Arrays.sort(sorted);
+
+      System.out.println("mode:                 " + (warm ? "warm, " + iterations + " iteration(s)" : "cold"));
+      if (warm) {
+          System.out.println("warm-up:              " + micros(warmUpNanos));
+      }
+      System.out.println("time to first result: " + micros(firstResult));
+      System.out.println("first call:           " + micros(latencies[0]));
+      System.out.println("first " + CALLS + " calls total: " + micros(total));
+      System.out.println("median call:          " + micros(sorted[CALLS / 2]));
+      System.out.println("slowest call:         " + micros(sorted[CALLS - 1]));
+  }
+
+  /**
+   * Formats a duration in microseconds.
+   *
+   * @param nanos The duration in nanoseconds.
+   * @return The formatted duration.
+   */
+  private static String micros(final long nanos) {
+      return (nanos / 1000) + " us";
+  }
+}